@@ -0,0 +1,96 @@
+package com.tradesim;
+
+import com.tradesim.model.SimulationResult;
+import com.tradesim.model.Trade;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-simulation hot paths. The methods that draw random numbers take the next of
+ * {@code STREAMS} simulation streams, made fresh for every iteration, so the JIT cannot fold
+ * the sample set or the sampled path into constants; a per-invocation setup would cost more
+ * than these microsecond calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathBenchmark {
+    private static final int STREAMS = 1024;
+
+    @Param({"250", "1000"})
+    public int numTrades;
+
+    Config cfg;
+    Simulator.Scratch scratch;
+    List<Trade> sampleTrades;
+    SampleSet sampleSet;
+    SampleSet generated;
+    final SplittableRandom[] streams = new SplittableRandom[STREAMS];
+    long index;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cfg = new Config();
+        cfg.numTrades = numTrades;
+        cfg.montyCarlo = true;
+        scratch = new Simulator.Scratch(cfg);
+        sampleTrades = TradeGenerator.generateSampleTrades(cfg, Rng.forSimulation(cfg.seed, 0));
+        sampleSet = SampleSet.of(sampleTrades);
+        generated = new SampleSet(cfg.numSampleTrades);
+    }
+
+    @Setup(Level.Iteration)
+    public void nextStreams() {
+        for (int k = 0; k < STREAMS; k++) {
+            streams[k] = Rng.forSimulation(cfg.seed, ++index);
+        }
+    }
+
+    private SplittableRandom rnd() {
+        return streams[next++ & (STREAMS - 1)];
+    }
+
+    @Benchmark
+    public List<Trade> generateSampleTrades() {
+        return TradeGenerator.generateSampleTrades(cfg, rnd());
+    }
+
+    @Benchmark
+    public SampleSet generateSampleSet() {
+        TradeGenerator.generate(cfg, rnd(), generated);
+        return generated;
+    }
+
+    @Benchmark
+    public double calculateKellyFraction() {
+        return Kelly.calculateKellyFraction(sampleTrades);
+    }
+
+    @Benchmark
+    public double calculateKellyFractionPacked() {
+        return Kelly.calculateKellyFraction(sampleSet);
+    }
+
+    @Benchmark
+    public SimulationResult simulate() {
+        return Simulator.simulate(cfg, sampleSet, scratch, rnd());
+    }
+
+    @Benchmark
+    public Map<String, Object> simulateTrades() {
+        return Simulator.simulateTrades(cfg, sampleTrades, rnd());
+    }
+
+    @Benchmark
+    public SimulationResult runSimulation() {
+        return MonteCarlo.runSimulation(cfg, ++index, scratch);
+    }
+}
@@ -0,0 +1,60 @@
+package com.tradesim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end runMonteCarloParallel without saving. Simulations per second is
+ * numSimulations / score; console output is discarded while the benchmark runs.
+ * {@code engine} is the worker pool ("pool"), virtual threads ("virtual") or the vectorized
+ * worker pool ("vector").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MonteCarloBenchmark {
+    @Param({"10000", "100000"})
+    public int numSimulations;
+
+    @Param({"10000"})
+    public int batchSize;
+
+    @Param({"250"})
+    public int numTrades;
+
+    @Param({"pool", "virtual", "vector"})
+    public String engine;
+
+    Config cfg;
+    PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cfg = new Config();
+        cfg.montyCarlo = true;
+        cfg.saveResults = false;
+        cfg.numSimulations = numSimulations;
+        cfg.batchSize = batchSize;
+        cfg.numTrades = numTrades;
+        cfg.virtualThreads = engine.equals("virtual");
+        cfg.vectorized = engine.equals("vector");
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void runMonteCarloParallel() throws Exception {
+        MonteCarlo.runMonteCarloParallel(cfg);
+    }
+}
@@ -0,0 +1,58 @@
+package com.tradesim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Three quantiles of a column of final balances: full sort vs selection vs histogram. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PercentilesBenchmark {
+    static final double[] QUANTILES = {0.5, 0.72, 0.98};
+
+    @Param({"1000000", "10000000"})
+    public int numResults;
+
+    long[] balances;
+    long[] work;
+    Histogram histogram;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        balances = new long[numResults];
+        histogram = new Histogram();
+        for (int i = 0; i < numResults; i++) {
+            // roughly log-normal, like final balances
+            balances[i] = (long) Math.exp(14 + 2 * rnd.nextGaussian());
+            histogram.record(balances[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        work = balances.clone();
+    }
+
+    @Benchmark
+    public long parallelSort() {
+        Arrays.parallelSort(work);
+        return work[Percentiles.rank(work.length, QUANTILES[0])];
+    }
+
+    @Benchmark
+    public long[] exact() {
+        return Percentiles.exact(work, QUANTILES);
+    }
+
+    @Benchmark
+    public long[] approximate() {
+        return Percentiles.approximate(histogram, QUANTILES);
+    }
+}
@@ -0,0 +1,51 @@
+package com.tradesim;
+
+import com.tradesim.model.SimulationResult;
+import com.tradesim.model.StopReason;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Cost of persisting a finished run, plain or gzip-compressed. Writes into a temporary directory. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimulationSaverBenchmark {
+    @Param({"10000", "100000"})
+    public int numResults;
+
+    @Param({"0"})
+    public int sampleSize;
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    Config cfg;
+    ResultColumns results;
+    Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cfg = new Config();
+        cfg.montyCarlo = true;
+        SplittableRandom rnd = new SplittableRandom(42);
+        results = new ResultColumns(0, numResults, sampleSize);
+        for (int i = 0; i < numResults; i++) {
+            results.set(i, new SimulationResult(rnd.nextLong(100_000_000L), rnd.nextDouble(100.0), cfg.numTrades,
+                    0, StopReason.COMPLETED));
+        }
+        file = Files.createTempDirectory("tradesim-bench").resolve(compressed ? "montecarlo_results.tsim.gz" : "montecarlo_results.tsim");
+    }
+
+    @Benchmark
+    public void saveSimulationResults() throws IOException {
+        SimulationSaver.saveSimulationResults(cfg, results, file.toString());
+    }
+}
@@ -0,0 +1,85 @@
+package com.tradesim;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Wall time of a fresh JVM running Main, from launch to exit, so it includes JVM startup,
+ * class loading and config parsing. {@code mode} is a quiet single run ("single") or a Monte
+ * Carlo of 1,000 simulations without saving ("mc"). {@code cds} runs with the JDK's default
+ * class data sharing ("jdk") or with an application archive made by a training run of the same
+ * command at setup ("app"); the archive needs the class path to be jars, as with the bench jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"single", "mc"})
+    public String mode;
+
+    @Param({"jdk", "app"})
+    public String cds;
+
+    Path dir;
+    List<String> command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("tradesim-startup-");
+        Path archive = dir.resolve("app.jsa");
+        if (cds.equals("app")) {
+            launch(command("-XX:ArchiveClassesAtExit=" + archive));
+        }
+        command = command(cds.equals("app") ? "-XX:SharedArchiveFile=" + archive : null);
+    }
+
+    private List<String> command(String cdsOption) {
+        List<String> c = new ArrayList<>();
+        c.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if (cdsOption != null) c.add(cdsOption);
+        if (mode.equals("mc")) c.add("-Dmode=mc");
+        c.add("-cp");
+        c.add(System.getProperty("java.class.path"));
+        c.add(Main.class.getName());
+        if (mode.equals("mc")) {
+            c.addAll(List.of("numSimulations=1000", "saveResults=false", "metricsIntervalSeconds=0"));
+        } else {
+            c.addAll(List.of("tradeLogFormat=none", "reportTrades=false", "printTradeSamples=false"));
+        }
+        return c;
+    }
+
+    private void launch(List<String> c) throws Exception {
+        Process p = new ProcessBuilder(c).directory(dir.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        int exit = p.waitFor();
+        if (exit != 0) throw new IllegalStateException(String.join(" ", c) + " exited with " + exit);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path f : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    @Benchmark
+    public void launch() throws Exception {
+        launch(command);
+    }
+}
@@ -0,0 +1,253 @@
+package com.tradesim;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Final-balance distribution without sampling trade sequences. Every trade multiplies the
+ * balance by (1 + f * rrr * (1 - tax)) or (1 - f), so for a fixed sample set and risk schedule
+ * the log-balance after trade t is the previous one plus an independent step; the engine keeps
+ * the probability of every log-balance on a grid of {@code BINS_PER_UNIT} bins per unit of ln
+ * and convolves it with the step distribution of each trade (one distinct step per sample,
+ * merged when equal, split linearly between neighbouring bins). Runs stopped by ruinBalance or
+ * stopAtTarget are absorbed where they stop; mass that drops below a balance of 1 counts as
+ * bankrupt. The result is mixed over the sample sets the Monte Carlo would draw: the pool when
+ * there is one, otherwise those of the first {@code analyticSampleSets} simulations.
+ *
+ * <p>Integer rounding of risk, profit and tax is not modelled, which matters only for small
+ * balances. Drawdown stops depend on the whole path and are not supported.
+ */
+public class AnalyticEngine {
+    // grid resolution: adjacent bins differ by 1% in balance
+    static final int BINS_PER_UNIT = 100;
+    static final int BINS = (int) Math.ceil(Math.log(Long.MAX_VALUE) * BINS_PER_UNIT) + 1;
+    static final double[] QUANTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+    // probability below which an edge bin is folded into its neighbour
+    private static final double TAIL = 1e-15;
+
+    /** Probabilities of the final balance: bankrupt (0) and every grid balance. */
+    public record Result(int sampleSets, double bankrupt, double[] mass, long targetBalance) {
+        public double successRate() {
+            double p = 0;
+            for (int k = bin(targetBalance); k < mass.length; k++) p += mass[k];
+            return p;
+        }
+
+        public double averageBalance() {
+            double sum = 0;
+            for (int k = 0; k < mass.length; k++) sum += mass[k] * balance(k);
+            return sum;
+        }
+
+        /** The smallest balance with at least probability q at or below it. */
+        public long balanceAtQuantile(double q) {
+            double cumulative = bankrupt;
+            if (cumulative > q) return 0;
+            for (int k = 0; k < mass.length; k++) {
+                cumulative += mass[k];
+                if (cumulative > q) return Math.round(balance(k));
+            }
+            return Math.round(balance(mass.length - 1));
+        }
+    }
+
+    private AnalyticEngine() {
+    }
+
+    public static Result run(Config cfg) {
+        if (cfg.stopDrawdownPct > 0) {
+            throw new IllegalArgumentException("The analytic engine does not model stopDrawdownPct");
+        }
+        SampleSet[] sets = sampleSets(cfg);
+        double[] schedule = Risk.schedule(cfg);
+        double[] total = IntStream.range(0, sets.length).parallel()
+                .mapToObj(i -> distribution(cfg, sets[i], schedule))
+                .reduce(new double[BINS + 1], AnalyticEngine::add);
+        double[] mass = new double[BINS];
+        for (int k = 0; k < BINS; k++) mass[k] = total[k + 1] / sets.length;
+        return new Result(sets.length, total[0] / sets.length, mass, cfg.targetBalance);
+    }
+
+    private static double[] add(double[] a, double[] b) {
+        double[] sum = a.clone();
+        for (int i = 0; i < sum.length; i++) sum[i] += b[i];
+        return sum;
+    }
+
+    private static SampleSet[] sampleSets(Config cfg) {
+        SamplePool pool = SamplePool.create(cfg);
+        if (pool != null) {
+            SampleSet[] sets = new SampleSet[pool.size()];
+            for (int k = 0; k < sets.length; k++) sets[k] = pool.get(k);
+            return sets;
+        }
+        SampleSet[] sets = new SampleSet[Math.max(1, Math.min(cfg.analyticSampleSets, cfg.numSimulations))];
+        for (int i = 0; i < sets.length; i++) {
+            sets[i] = SamplePool.sampleSet(cfg, null, Rng.forSimulation(cfg.seed, i), new SampleSet(cfg.numSampleTrades));
+        }
+        return sets;
+    }
+
+    static int bin(long balance) {
+        if (balance <= 1) return 0;
+        return Math.min(BINS - 1, (int) Math.ceil(Math.log(balance) * BINS_PER_UNIT - 1e-9));
+    }
+
+    static double balance(int bin) {
+        return Math.exp((double) bin / BINS_PER_UNIT);
+    }
+
+    // [0] = bankrupt, [1 + k] = grid bin k; the distribution of one sample set
+    private static double[] distribution(Config cfg, SampleSet set, double[] schedule) {
+        double base = cfg.kellyCap == 0 ? cfg.maxRiskPrct : set.kellyFraction() * cfg.kellyCap;
+        double taxRate = cfg.calcTax ? cfg.taxPct / 100.0 : 0.0;
+        int n = set.size();
+        // distinct win multipliers (sorted rrr) with their probabilities
+        double[] winRrr = new double[n];
+        int wins = 0;
+        for (int j = 0; j < n; j++) {
+            if (set.win(j)) winRrr[wins++] = set.rrr(j);
+        }
+        Arrays.sort(winRrr, 0, wins);
+
+        double[] p = new double[BINS];
+        double[] next = new double[BINS];
+        double[] stopped = new double[BINS];
+        double bankrupt = 0;
+        double start = Math.log(cfg.startingBalance) * BINS_PER_UNIT;
+        int k0 = (int) Math.floor(start);
+        p[k0] = 1 - (start - k0);
+        p[Math.min(BINS - 1, k0 + 1)] += start - k0;
+        int lo = k0, hi = Math.min(BINS - 1, k0 + 1);
+        int ruinBin = cfg.ruinBalance > 0 ? bin(cfg.ruinBalance + 1) : 0;
+        int targetBin = cfg.stopAtTarget ? bin(cfg.targetBalance) : BINS;
+
+        int[] shiftBin = new int[wins + 1];
+        double[] shiftLow = new double[wins + 1];
+        double[] shiftHigh = new double[wins + 1];
+        int shifts = 0;
+        double f = Double.NaN;
+        for (int t = 0; t < cfg.numTrades && lo <= hi; t++) {
+            double risk = base * schedule[t];
+            if (risk != f) {
+                f = risk;
+                shifts = steps(f, taxRate, winRrr, wins, n, shiftBin, shiftLow, shiftHigh);
+            }
+            // each step moves a whole-bin offset, split onto that bin and the next; the parts
+            // that would leave the grid go to bankrupt (below) or the top bin (above)
+            int newLo = BINS, newHi = -1;
+            for (int s = 0; s < shifts; s++) {
+                int off = shiftBin[s];
+                double low = shiftLow[s], high = shiftHigh[s];
+                int from = Math.max(lo, -off);
+                int to = Math.min(hi, BINS - 2 - off);
+                for (int k = lo; k < Math.min(from, hi + 1); k++) {
+                    bankrupt += p[k] * (low + high);
+                }
+                for (int k = from; k <= to; k++) {
+                    double m = p[k];
+                    next[k + off] += m * low;
+                    next[k + off + 1] += m * high;
+                }
+                for (int k = Math.max(lo, to + 1); k <= hi; k++) {
+                    next[BINS - 1] += p[k] * (low + high);
+                }
+                if (from <= to) {
+                    newLo = Math.min(newLo, from + off);
+                    newHi = Math.max(newHi, to + off + 1);
+                }
+                if (to < hi) newHi = BINS - 1;
+            }
+            Arrays.fill(p, lo, hi + 1, 0.0);
+            // when every remaining balance went bankrupt the range is empty (0, -1) and the loop ends
+            newLo = newHi < 0 ? 0 : Math.min(newLo, newHi);
+            double[] swap = p;
+            p = next;
+            next = swap;
+            lo = newLo;
+            hi = newHi;
+            // drop the far tails, folding their mass into the nearest kept bin
+            while (lo < hi && p[lo] < TAIL) {
+                p[lo + 1] += p[lo];
+                p[lo++] = 0;
+            }
+            while (hi > lo && p[hi] < TAIL) {
+                p[hi - 1] += p[hi];
+                p[hi--] = 0;
+            }
+            // absorbing stops: ruin at or below ruinBalance, target when stopAtTarget
+            while (lo <= hi && lo < ruinBin) {
+                stopped[lo] += p[lo];
+                p[lo++] = 0;
+            }
+            while (hi >= lo && hi >= targetBin) {
+                stopped[hi] += p[hi];
+                p[hi--] = 0;
+            }
+        }
+        double[] out = new double[BINS + 1];
+        out[0] = bankrupt;
+        for (int k = 0; k < BINS; k++) out[k + 1] = p[k] + stopped[k];
+        return out;
+    }
+
+    // the distinct log-balance steps of one trade at risk fraction f, each as a whole-bin offset
+    // and the probabilities landing on that bin and the next; returns their number
+    private static int steps(double f, double taxRate, double[] winRrr, int wins, int n,
+                             int[] shiftBin, double[] shiftLow, double[] shiftHigh) {
+        int shifts = 0;
+        int losses = n - wins;
+        if (losses > 0) {
+            shifts = addStep(f >= 1 ? Double.NEGATIVE_INFINITY : Math.log(1 - f), (double) losses / n, shifts,
+                    shiftBin, shiftLow, shiftHigh);
+        }
+        for (int j = 0; j < wins; ) {
+            int same = j;
+            while (same < wins && winRrr[same] == winRrr[j]) same++;
+            shifts = addStep(Math.log1p(f * winRrr[j] * (1 - taxRate)), (double) (same - j) / n, shifts,
+                    shiftBin, shiftLow, shiftHigh);
+            j = same;
+        }
+        return shifts;
+    }
+
+    private static int addStep(double logStep, double probability, int shifts,
+                               int[] shiftBin, double[] shiftLow, double[] shiftHigh) {
+        double bins = logStep * BINS_PER_UNIT;
+        if (bins < -BINS) {
+            // a total loss: every balance lands below the grid
+            shiftBin[shifts] = -BINS;
+            shiftLow[shifts] = probability;
+            shiftHigh[shifts] = 0;
+        } else {
+            int whole = (int) Math.floor(bins);
+            double frac = bins - whole;
+            // steps come in increasing order, so an equal offset can only be the previous one
+            if (shifts > 0 && shiftBin[shifts - 1] == whole) {
+                shiftLow[shifts - 1] += probability * (1 - frac);
+                shiftHigh[shifts - 1] += probability * frac;
+                return shifts;
+            }
+            shiftBin[shifts] = whole;
+            shiftLow[shifts] = probability * (1 - frac);
+            shiftHigh[shifts] = probability * frac;
+        }
+        return shifts + 1;
+    }
+
+    /** Prints the analytic counterpart of the Monte Carlo summary. */
+    public static void printSummary(Config cfg, Result r, double millis) {
+        System.out.printf("%n%s%n", MonteCarlo.dashbar);
+        System.out.printf("Analytic final balance distribution (%d sample sets, %d trades, %.0f ms):%n",
+                r.sampleSets(), cfg.numTrades, millis);
+        System.out.println("Target balance: $" + String.format("%,d", cfg.targetBalance));
+        System.out.printf("Success rate: %.4f%n", r.successRate());
+        System.out.printf("Bankruptcy rate: %.4f%n", r.bankrupt());
+        System.out.println("Median final balance: $" + r.balanceAtQuantile(0.5));
+        System.out.println("Average final balance: $" + Math.round(r.averageBalance()));
+        for (double q : QUANTILES) {
+            System.out.printf("p%-2d final balance: $%,d%n", Math.round(q * 100), r.balanceAtQuantile(q));
+        }
+        System.out.printf("%s%n", MonteCarlo.dashbar);
+    }
+}
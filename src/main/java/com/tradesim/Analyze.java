@@ -1,76 +1,79 @@
 package com.tradesim;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.msgpack.core.MessagePack;
-import org.msgpack.core.MessageUnpacker;
-
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class Analyze {
     public static void analyzeBalances(List<Long> finalBalances) {
-        analyze(finalBalances, 10_000_000L, 1_000_000_000L);
-//        System.out.println("=".repeat(80));
-//        analyze(finalBalances, 100_000L, 1_000_000L);
-//        analyze(finalBalances, 1_000_000L, 10_000_000L);
-//        analyze(finalBalances, 10_000_000L, 100_000_000L);
-//        analyze(finalBalances, 100_000_000L, 1_000_000_000L);
-
-//        System.out.println("=".repeat(80));
-//        analyze(finalBalances, 100_000L, 100_000L, 1_000_000L);
-//        analyze(finalBalances, 1_000_000L,1_000_000L, 10_000_000L);
-//        analyze(finalBalances, 10_000_000L,10_000_000L, 100_000_000L);
-//        analyze(finalBalances, 100_000_000L,100_000_000L, 1_000_000_000L);
-//        System.out.println("=".repeat(80));
+        analyzeBalances(Histogram.of(finalBalances.stream().mapToLong(Long::longValue).toArray()));
     }
 
-    private static void analyze(List<Long> finalBalances, long binSize, long minBalance, long maxBalance) {
+    public static void analyzeBalances(Histogram finalBalances) {
+        analyze(finalBalances, 10_000_000L, 1_000_000_000L);
+    }
 
-        List<Long> filtered = finalBalances.stream().filter(b -> b > minBalance && b < maxBalance).collect(Collectors.toList());
-        if (filtered.isEmpty()) {
-            System.out.println("\nNo balances < " + maxBalance);
-            return;
+    /**
+     * Distribution over log-scale bins, binsPerDecade per power of ten from the smallest to the
+     * largest positive balance, so every order of magnitude gets the same resolution.
+     */
+    public static void analyzeLogScale(Histogram finalBalances, int binsPerDecade) {
+        long total = finalBalances.count();
+        if (total == 0) return;
+        long zeros = Math.round(finalBalances.countBetween(0, 1));
+        System.out.printf("%nFinal Balance Distribution (log scale, %d bins per decade):%n", binsPerDecade);
+        long cumulative = 0;
+        if (zeros > 0) {
+            cumulative += zeros;
+            System.out.printf("$0 (bankrupt)%26s: %,11d  %6.2f%%  %6.2f%%%n", "", zeros, 100.0 * zeros / total,
+                    100.0 * cumulative / total);
         }
-        //long maxBalance = filtered.stream().mapToLong(Long::longValue).max().orElse(0);
-        int bins = 10;
-        long[] counts = new long[bins];
-        for (long b : filtered) {
-            int idx = (int) Math.min(bins - 1, b / binSize);
-            counts[idx]++;
+        if (zeros >= total) return;
+        long lowest = Math.max(1, finalBalances.valueAtRank(zeros));
+        int first = (int) Math.floor(Math.log10(lowest) * binsPerDecade);
+        int last = (int) Math.floor(Math.log10(Math.max(1, finalBalances.max())) * binsPerDecade);
+        for (int k = first; k <= last; k++) {
+            long lower = edge(k, binsPerDecade);
+            long upper = edge(k + 1, binsPerDecade);
+            long count = Math.round(finalBalances.countBetween(lower, upper));
+            if (count == 0) continue;
+            cumulative += count;
+            System.out.printf("$%,17d - $%,17d: %,11d  %6.2f%%  %6.2f%%%n", lower, upper, count,
+                    100.0 * count / total, 100.0 * Math.min(cumulative, total) / total);
         }
-        System.out.println("-".repeat(80));
-        System.out.printf("\nFinal Balance Distribution (< %,d, per $%,d):%n", maxBalance, binSize);
-        for (int i = 0; i < counts.length; i++) {
-            long lower = i * binSize;
-            long upper = (i + 1) * binSize;
-            if (counts[i] > 0) {
-                System.out.printf("$%,d - $%,d: %d%n", lower, upper, counts[i]);
-            }
+    }
+
+    /** Balance and drawdown bands (p5 to p95) after every interval-th trade and the last one. */
+    public static void analyzePaths(PathStats paths, int interval) {
+        if (paths.count() == 0) return;
+        System.out.printf("%nBalance Bands by Trade (%,d runs; drawdown from the running peak):%n", paths.count());
+        System.out.printf("%6s | %15s %15s %15s %15s %15s | %8s %8s%n", "Trade", "p5", "p25", "p50", "p75", "p95",
+                "DD p50", "DD p95");
+        int step = Math.max(1, interval);
+        for (int t = step; t < paths.numTrades() + step; t += step) {
+            int trade = Math.min(t, paths.numTrades());
+            System.out.printf("%6d |", trade);
+            for (double q : PathStats.BANDS) System.out.printf(" %,15d", paths.balanceAtQuantile(trade, q));
+            System.out.printf(" | %7.2f%% %7.2f%%%n", paths.drawdownAtQuantile(trade, 0.5),
+                    paths.drawdownAtQuantile(trade, 0.95));
         }
     }
 
-    private static void analyze(List<Long> finalBalances, long binSize, long balance) {
-        List<Long> filtered = finalBalances.stream().filter(b -> b < balance).collect(Collectors.toList());
-        if (filtered.isEmpty()) {
+    private static long edge(int k, int binsPerDecade) {
+        return Math.round(Math.pow(10, (double) k / binsPerDecade));
+    }
+
+    private static void analyze(Histogram finalBalances, long binSize, long balance) {
+        if (finalBalances.countBetween(0, balance) == 0) {
             System.out.println("\nNo balances < " + balance);
             return;
         }
-        long maxBalance = filtered.stream().mapToLong(Long::longValue).max().orElse(0);
         int bins = 10;
-        long[] counts = new long[bins];
-        for (long b : filtered) {
-            int idx = (int) Math.min(bins - 1, b / binSize);
-            counts[idx]++;
-        }
-        //System.out.println("-".repeat(80));
+        long[] counts = Percentiles.buckets(finalBalances, 0, binSize, bins);
+        // the last bin collects everything up to the cut-off, as in the list version
+        counts[bins - 1] = Math.round(finalBalances.countBetween((bins - 1) * binSize, balance));
+        printDistribution(counts, binSize, balance);
+    }
+
+    private static void printDistribution(long[] counts, long binSize, long balance) {
         System.out.printf("\nFinal Balance Distribution (< %,d, per $%,d):%n", balance, binSize);
         for (int i = 0; i < counts.length; i++) {
             long lower = i * binSize;
@@ -84,51 +87,54 @@ public class Analyze {
     public static void analyzePercentiles(List<Long> finalBalances) {
         analyzePercentiles(finalBalances, 0.3, 0.8);
     }
+
     public static void analyzePercentiles(List<Long> finalBalances, double low, double high) {
-        if (finalBalances.isEmpty()) {
+        analyzePercentiles(finalBalances.stream().mapToLong(Long::longValue).toArray(), low, high);
+    }
+
+    /** Exact percentiles by selection; values is reordered but not fully sorted. */
+    public static void analyzePercentiles(long[] values, double low, double high) {
+        if (values.length == 0) {
             System.out.println("No balances to analyze.");
             return;
         }
+        long[] p = Percentiles.exact(values, low, high);
+        printPercentiles(low, high, p[0], p[1], (from, size, n) -> Percentiles.buckets(values, from, size, n));
+    }
 
-        // Convert and sort
-        List<Long> sorted = new ArrayList<>(finalBalances);
-        Collections.sort(sorted);
-
-        int n = sorted.size();
+    public static void analyzePercentiles(Histogram finalBalances, double low, double high) {
+        if (finalBalances.count() == 0) {
+            System.out.println("No balances to analyze.");
+            return;
+        }
+        long[] p = Percentiles.approximate(finalBalances, low, high);
+        printPercentiles(low, high, p[0], p[1], (from, size, n) -> Percentiles.buckets(finalBalances, from, size, n));
+    }
 
-        long p30 = sorted.get((int) (n * low));
-        long p80 = sorted.get((int) (n * high));
+    private interface Buckets {
+        long[] count(long from, long size, int n);
+    }
 
-        System.out.printf("\nlow (%d) Percentile: $%,12d", (int)(low*100), p30);
-        System.out.printf("\nhigh (%d) Percentile: $%,12d\n",(int)(high*100) ,p80);
+    private static void printPercentiles(double low, double high, long pLow, long pHigh, Buckets buckets) {
+        System.out.printf("\nlow (%d) Percentile: $%,12d", (int)(low*100), pLow);
+        System.out.printf("\nhigh (%d) Percentile: $%,12d\n",(int)(high*100) ,pHigh);
 
-        if (p30 == p80) {
+        if (pLow == pHigh) {
             System.out.println("Percentile range is zero.");
             return;
         }
 
         // Split into buckets of $10M
         long bucketSize = 10_000_000;
-        long rangeStart = (p30 / bucketSize) * bucketSize;
-        long rangeEnd = ((p80 + bucketSize - 1) / bucketSize) * bucketSize;
-
-        int numBuckets = (int) ((rangeEnd - rangeStart) / bucketSize);
-        int[] bucketCounts = new int[numBuckets];
+        long rangeStart = (pLow / bucketSize) * bucketSize;
+        long rangeEnd = ((pHigh + bucketSize - 1) / bucketSize) * bucketSize;
+        long[] counts = buckets.count(rangeStart, bucketSize, (int) ((rangeEnd - rangeStart) / bucketSize));
 
-        for (long val : finalBalances) {
-            if (val >= rangeStart && val < rangeEnd) {
-                int index = (int) ((val - rangeStart) / bucketSize);
-                bucketCounts[index]++;
-            }
-        }
-
-        // Print results
         System.out.printf("\nDistribution between %dth–%dth percentile (in $10M buckets):\n", (int)(low*100), (int)(high*100));
-        for (int i = 0; i < numBuckets; i++) {
-            if(bucketCounts[i] == 0) continue;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
             long from = rangeStart + i * bucketSize;
-            long to = from + bucketSize;
-            System.out.printf("$%,12d – $%,12d : %,d\n", from, to - 1, bucketCounts[i]);
+            System.out.printf("$%,12d – $%,12d : %,d\n", from, from + bucketSize - 1, counts[i]);
         }
     }
 }
@@ -0,0 +1,64 @@
+package com.tradesim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes trades as fixed-size little-endian records through a reusable 1 MB buffer.
+ *
+ * <pre>
+ * header : long MAGIC, int VERSION, int RECORD_BYTES
+ * record : int tradeNum, int sample, int win (0/1), int 0, double rrr, long riskAmount,
+ *          long startBalance, long endBalance
+ * </pre>
+ */
+public final class BinaryTradeSink implements TradeSink {
+    static final long MAGIC = 0x31474F4C4D495354L; // "TSIMLOG1"
+    static final int VERSION = 1;
+    static final int RECORD_BYTES = 48;
+
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+    public BinaryTradeSink(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buf.putLong(MAGIC).putInt(VERSION).putInt(RECORD_BYTES);
+    }
+
+    @Override
+    public void trade(int tradeNum, int sample, boolean win, double rrr, long riskAmount, long startBalance,
+                      long endBalance) {
+        if (buf.remaining() < RECORD_BYTES) flush();
+        buf.putInt(tradeNum).putInt(sample).putInt(win ? 1 : 0).putInt(0)
+                .putDouble(rrr).putLong(riskAmount).putLong(startBalance).putLong(endBalance);
+    }
+
+    private void flush() {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+}
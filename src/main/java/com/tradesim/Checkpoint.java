@@ -0,0 +1,254 @@
+package com.tradesim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * On-disk progress of a Monte Carlo run. Every finished batch of {@code cfg.batchSize}
+ * simulations is written to its own segment file (a results file with one block) and then
+ * recorded in {@code manifest.txt}; a batch counts as done only once its manifest line is
+ * durable. Because seeds are derived from the simulation index, a resumed run reproduces the
+ * missing batches exactly. The manifest also records the run's Config, without the fields that
+ * do not change results (reporting, scheduling, output), and a resume whose Config differs in
+ * any other field is refused. With pathStats, each batch's {@link PathStats} is written next to
+ * its segment before the batch is recorded, so a resumed run's bands cover every batch. In a
+ * {@link Cluster} run the worker processes write the segments and the coordinator alone records
+ * them, with their path statistics.
+ *
+ * <pre>
+ * manifest.txt : tradesim-checkpoint seed=S numSimulations=N batchSize=B
+ *                config &lt;Config JSON&gt;
+ *                batch &lt;index&gt; &lt;startIndex&gt; &lt;count&gt; &lt;segment file&gt;
+ *                ...
+ * paths-NNNNNN.bin : PathStats of batch NNNNNN, in its serialized form (pathStats only)
+ * </pre>
+ */
+public class Checkpoint {
+    static final String MANIFEST = "manifest.txt";
+
+    private final Config cfg;
+    private final Path dir;
+    private final BitSet completed = new BitSet();
+
+    private Checkpoint(Config cfg, Path dir) {
+        this.cfg = cfg;
+        this.dir = dir;
+    }
+
+    /** Opens the checkpoint directory, reading the manifest when resuming and starting a new one otherwise. */
+    public static Checkpoint open(Config cfg) throws IOException {
+        return open(cfg, Path.of(cfg.checkpointDir));
+    }
+
+    static Checkpoint open(Config cfg, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Checkpoint cp = new Checkpoint(cfg, dir);
+        Path manifest = dir.resolve(MANIFEST);
+        if (cfg.resume && Files.exists(manifest)) {
+            cp.readManifest(manifest);
+        } else {
+            Files.writeString(manifest, cp.manifestHeader() + "\nconfig "
+                    + Config.mapper().writeValueAsString(resultConfig(cfg)) + "\n", StandardCharsets.UTF_8);
+        }
+        return cp;
+    }
+
+    private String manifestHeader() {
+        return "tradesim-checkpoint seed=" + cfg.seed + " numSimulations=" + cfg.numSimulations
+                + " batchSize=" + cfg.batchSize;
+    }
+
+    // cfg with every field that cannot change a simulation's result or the saved file reset to its default
+    private static Config resultConfig(Config cfg) {
+        Config c = cfg.copyWithSeed(cfg.seed);
+        Config d = new Config();
+        c.reportInterval = d.reportInterval;
+        c.reportTrades = d.reportTrades;
+        c.printTradeSamples = d.printTradeSamples;
+        c.tradeLogFormat = d.tradeLogFormat;
+        c.dumpPaths = d.dumpPaths;
+        c.logBinsPerDecade = d.logBinsPerDecade;
+        c.analyticSampleSets = d.analyticSampleSets;
+        c.numMonteCarloWorkers = d.numMonteCarloWorkers;
+        c.numProcesses = d.numProcesses;
+        c.virtualThreads = d.virtualThreads;
+        c.vectorized = d.vectorized;
+        c.saveResults = d.saveResults;
+        c.offHeapResults = d.offHeapResults;
+        c.compressResults = d.compressResults;
+        c.checkpointDir = d.checkpointDir;
+        c.resume = d.resume;
+        c.metricsIntervalSeconds = d.metricsIntervalSeconds;
+        c.metricsFile = d.metricsFile;
+        return c;
+    }
+
+    private void readManifest(Path manifest) throws IOException {
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(manifestHeader())) {
+            throw new IllegalStateException("Checkpoint in " + dir + " was written for a different run: "
+                    + (lines.isEmpty() ? "empty manifest" : lines.get(0)));
+        }
+        if (lines.size() < 2 || !lines.get(1).startsWith("config ")) {
+            throw new IllegalStateException("Checkpoint in " + dir + " does not record its run's config; start it afresh");
+        }
+        List<String> changed = differences(ConfigParser.parse(lines.get(1).substring(7), new Config()), resultConfig(cfg));
+        if (!changed.isEmpty()) {
+            throw new IllegalStateException("Checkpoint in " + dir + " was written for a different run: "
+                    + String.join(", ", changed) + " changed");
+        }
+        for (String line : lines.subList(2, lines.size())) {
+            String[] parts = line.trim().split(" ");
+            // a torn last line from a crash is ignored; that batch is simply run again
+            if (parts.length != 5 || !parts[0].equals("batch")) continue;
+            int batch = Integer.parseInt(parts[1]);
+            if (Files.exists(dir.resolve(parts[4])) && (!cfg.pathStats || Files.exists(dir.resolve(pathsName(batch))))) {
+                completed.set(batch);
+            }
+        }
+    }
+
+    private static List<String> differences(Config a, Config b) {
+        List<String> names = new ArrayList<>();
+        for (Field f : Config.class.getFields()) {
+            if (Modifier.isStatic(f.getModifiers())) continue;
+            try {
+                if (!Objects.deepEquals(f.get(a), f.get(b))) names.add(f.getName());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return names;
+    }
+
+    public int numBatches() {
+        return (cfg.numSimulations + cfg.batchSize - 1) / cfg.batchSize;
+    }
+
+    public int batchStart(int batch) {
+        return batch * cfg.batchSize;
+    }
+
+    public int batchSize(int batch) {
+        return Math.min(cfg.batchSize, cfg.numSimulations - batchStart(batch));
+    }
+
+    public synchronized boolean isComplete(int batch) {
+        return completed.get(batch);
+    }
+
+    public synchronized int completedSimulations() {
+        int total = 0;
+        for (int b = completed.nextSetBit(0); b >= 0; b = completed.nextSetBit(b + 1)) {
+            total += batchSize(b);
+        }
+        return total;
+    }
+
+    private static String segmentName(int batch) {
+        return String.format("segment-%06d.tsim", batch);
+    }
+
+    private static String pathsName(int batch) {
+        return String.format("paths-%06d.bin", batch);
+    }
+
+    /** Writes the batch's segment, then appends and forces its manifest entry. */
+    public void commit(int batch, ResultColumns columns) throws IOException {
+        writeSegment(dir, cfg, batch, columns);
+        record(batch);
+    }
+
+    /** Writes the segment file of a batch into dir, durably, without recording it. */
+    static void writeSegment(Path dir, Config cfg, int batch, ResultColumns columns) throws IOException {
+        Metrics.SaveEvent event = new Metrics.SaveEvent();
+        event.begin();
+        String name = segmentName(batch);
+        Path tmp = dir.resolve(name + ".tmp");
+        try (ResultsFile.Writer writer = new ResultsFile.Writer(tmp, cfg)) {
+            writer.writeBlock(columns);
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (event.shouldCommit()) {
+            event.path = dir.resolve(name).toString();
+            event.simulations = columns.count();
+            event.bytes = Files.size(dir.resolve(name));
+            event.commit();
+        }
+    }
+
+    /** Writes the path statistics of a batch durably, without recording it; call before {@link #record}. */
+    public void writePaths(int batch, PathStats paths) throws IOException {
+        String name = pathsName(batch);
+        Path tmp = dir.resolve(name + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)))) {
+            paths.writeTo(out);
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Appends and forces the manifest entry of a batch whose segment has been written. */
+    public synchronized void record(int batch) throws IOException {
+        String line = "batch " + batch + " " + batchStart(batch) + " " + batchSize(batch) + " " + segmentName(batch) + "\n";
+        try (FileChannel ch = FileChannel.open(dir.resolve(MANIFEST), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            ch.force(true);
+        }
+        completed.set(batch);
+    }
+
+    /** Folds every completed segment into stats, and its path statistics into paths when non-null. */
+    public void loadCompleted(MonteCarloStats stats, PathStats paths) throws IOException {
+        for (int b = completed.nextSetBit(0); b >= 0; b = completed.nextSetBit(b + 1)) {
+            try (MappedResults segment = MappedResults.open(dir.resolve(segmentName(b)))) {
+                segment.addTo(stats);
+            }
+            if (paths == null) continue;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(dir.resolve(pathsName(b)))))) {
+                paths.merge(PathStats.readFrom(in));
+            }
+        }
+    }
+
+    /** Concatenates all segments, in simulation order, into a single results file. */
+    public void mergeInto(Path target) throws IOException {
+        Metrics.SaveEvent event = new Metrics.SaveEvent();
+        event.begin();
+        try (ResultsFile.Writer writer = new ResultsFile.Writer(target, cfg)) {
+            for (int b = 0; b < numBatches(); b++) {
+                writer.appendBlocks(dir.resolve(segmentName(b)));
+            }
+        }
+        if (event.shouldCommit()) {
+            event.path = target.toString();
+            event.simulations = cfg.numSimulations;
+            event.bytes = Files.size(target);
+            event.commit();
+        }
+    }
+}
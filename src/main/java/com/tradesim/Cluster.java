@@ -0,0 +1,275 @@
+package com.tradesim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Monte Carlo across several local JVMs. The coordinator listens on a loopback port, starts
+ * {@code numProcesses} worker processes (same java, class path and JVM options, with
+ * {@code -Dmode=worker}) and hands out batches of {@code batchSize} simulation indices over
+ * the socket. A worker runs each batch on its own {@link MonteCarloRunner} and answers with
+ * the batch's {@link MonteCarloStats} (and {@link PathStats}) in their compact serialized form;
+ * when results are kept it first writes the batch's segment into a shared directory, the
+ * checkpoint directory or a temporary one, which the coordinator merges at the end. Since a
+ * simulation depends only on (seed, index), it does not matter which process ran a batch, and
+ * the batch of a failed worker, or of one that stops answering, is simply handed to another.
+ *
+ * <pre>
+ * coordinator -> worker : int length, config JSON, UTF segment directory ("" = none)
+ *                         then per batch: int batch (-1 = no more work)
+ * worker -> coordinator : per batch: int batch, long trades, long nanos, MonteCarloStats [, PathStats]
+ * </pre>
+ */
+public class Cluster {
+    private static final int ACCEPT_TIMEOUT_MS = 60_000;
+    // a batch may take this long plus one microsecond per trade before its worker counts as hung
+    private static final int BATCH_TIMEOUT_MS = 60_000;
+
+    private final Config cfg;
+    private final MonteCarloStats stats;
+    private final PathStats paths;
+    private final Metrics metrics;
+    private final Path segmentDir;
+    private final Checkpoint checkpoint;
+    private final BlockingQueue<Integer> pending = new LinkedBlockingQueue<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private long completed;
+
+    private Cluster(Config cfg, MonteCarloStats stats, PathStats paths, Metrics metrics, Path segmentDir)
+            throws IOException {
+        this.cfg = cfg;
+        this.stats = stats;
+        this.paths = paths;
+        this.metrics = metrics;
+        this.segmentDir = segmentDir;
+        this.checkpoint = segmentDir == null ? null : Checkpoint.open(cfg, segmentDir);
+    }
+
+    /**
+     * Runs all of cfg's simulations on numProcesses worker processes, folding them into stats
+     * (and paths, when non-null), and saves the results file when saveResults is set.
+     */
+    public static void run(Config cfg, MonteCarloStats stats, PathStats paths, Metrics metrics) throws Exception {
+        MonteCarloRunner.checkEngine(cfg);
+        boolean checkpointed = cfg.checkpointDir != null && !cfg.checkpointDir.isEmpty();
+        Path segmentDir = checkpointed ? Path.of(cfg.checkpointDir)
+                : cfg.saveResults ? Files.createTempDirectory("tradesim-cluster-") : null;
+        try {
+            Cluster cluster = new Cluster(cfg, stats, paths, metrics, segmentDir);
+            cluster.coordinate();
+            if (cfg.saveResults) {
+                Path path = ResultsFile.defaultPath(cfg);
+                cluster.checkpoint.mergeInto(path);
+                System.out.println("Saved " + cfg.numSimulations + " simulation results to: " + path);
+            }
+        } finally {
+            if (segmentDir != null && !checkpointed) deleteTree(segmentDir);
+        }
+    }
+
+    private void coordinate() throws Exception {
+        int numBatches = (cfg.numSimulations + cfg.batchSize - 1) / cfg.batchSize;
+        if (checkpoint != null && checkpoint.completedSimulations() > 0) {
+            completed = checkpoint.completedSimulations();
+            System.out.println("Resuming from " + segmentDir + ": " + String.format("%,d", completed)
+                    + " simulations already done");
+            checkpoint.loadCompleted(stats, paths);
+        }
+        for (int b = 0; b < numBatches; b++) {
+            if (checkpoint == null || !checkpoint.isComplete(b)) pending.add(b);
+        }
+        remaining.set(pending.size());
+        if (remaining.get() == 0) return;
+
+        List<Process> processes = new ArrayList<>();
+        List<Thread> handlers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, cfg.numProcesses, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MS);
+            byte[] workerConfig = Config.mapper().writeValueAsBytes(workerConfig());
+            List<String> command = workerCommand(server.getInetAddress().getHostAddress(), server.getLocalPort());
+            for (int p = 0; p < cfg.numProcesses; p++) {
+                processes.add(new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            for (int p = 0; p < cfg.numProcesses; p++) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    throw new IllegalStateException("Only " + p + " of " + cfg.numProcesses
+                            + " worker processes connected within " + ACCEPT_TIMEOUT_MS / 1000 + " seconds");
+                }
+                int worker = p;
+                handlers.add(Thread.ofPlatform().name("cluster-worker-" + p)
+                        .start(() -> serve(worker, socket, workerConfig)));
+            }
+            for (Thread t : handlers) {
+                t.join();
+            }
+        } finally {
+            for (Thread t : handlers) {
+                t.interrupt();
+            }
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+            }
+        }
+        if (remaining.get() > 0) {
+            throw new IllegalStateException(remaining.get() + " batches were not run: every worker process failed");
+        }
+    }
+
+    // the run's config as the workers see it: no reporting, checkpoints or nested processes of their own
+    private Config workerConfig() {
+        Config c = cfg.copyWithSeed(cfg.seed);
+        c.numProcesses = 0;
+        c.metricsIntervalSeconds = 0;
+        c.metricsFile = null;
+        c.checkpointDir = null;
+        c.resume = false;
+        c.dumpPaths = new long[0];
+        if (c.numMonteCarloWorkers == 0) {
+            c.numMonteCarloWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / cfg.numProcesses);
+        }
+        return c;
+    }
+
+    private static List<String> workerCommand(String host, int port) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // workers get their own mode; recordings and debuggers stay with the coordinator
+            if (arg.startsWith("-Dmode=") || arg.startsWith("-Dcoordinator=")
+                    || arg.startsWith("-XX:StartFlightRecording") || arg.startsWith("-agentlib:jdwp")) continue;
+            command.add(arg);
+        }
+        command.add("-Dmode=worker");
+        command.add("-Dcoordinator=" + host + ":" + port);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        return command;
+    }
+
+    // one handler thread per worker connection; a batch in flight when the worker fails goes back to pending
+    private void serve(int worker, Socket socket, byte[] workerConfig) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            out.writeInt(workerConfig.length);
+            out.write(workerConfig);
+            out.writeUTF(segmentDir == null ? "" : segmentDir.toAbsolutePath().toString());
+            out.flush();
+            socket.setSoTimeout(batchTimeoutMillis());
+            while (remaining.get() > 0) {
+                Integer batch = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                try {
+                    out.writeInt(batch);
+                    out.flush();
+                    int answered = in.readInt();
+                    long trades = in.readLong();
+                    long nanos = in.readLong();
+                    MonteCarloStats part = MonteCarloStats.readFrom(in);
+                    PathStats partPaths = cfg.pathStats ? PathStats.readFrom(in) : null;
+                    if (answered != batch) throw new IOException("answered batch " + answered + " for " + batch);
+                    complete(batch, part, partPaths, trades, nanos);
+                } catch (IOException e) {
+                    pending.add(batch);
+                    throw e;
+                }
+            }
+            out.writeInt(-1);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Worker process " + worker + " failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // a worker that hangs without exiting times out the read, and its batch goes back to pending
+    private int batchTimeoutMillis() {
+        return (int) Math.min(Integer.MAX_VALUE, BATCH_TIMEOUT_MS + (long) cfg.batchSize * cfg.numTrades / 1000);
+    }
+
+    private synchronized void complete(int batch, MonteCarloStats part, PathStats partPaths, long trades, long nanos)
+            throws IOException {
+        if (checkpoint != null) {
+            if (partPaths != null) checkpoint.writePaths(batch, partPaths);
+            checkpoint.record(batch);
+        }
+        stats.merge(part);
+        if (paths != null) paths.merge(partPaths);
+        metrics.chunk(part.count(), trades, part.bankrupt(), part.hits(), nanos);
+        completed += part.count();
+        remaining.decrementAndGet();
+        System.out.println("Finished " + String.format("%,d", completed) + " of "
+                + String.format("%,d", cfg.numSimulations) + " in "
+                + String.format("%,.1f seconds", (System.nanoTime() - startNanos) / 1e9)
+                + String.format(" (%,.0f sims/s)", metrics.simulations() / metrics.elapsedSeconds()));
+    }
+
+    /** Worker process: runs the batches the coordinator at host:port hands out until told to stop. */
+    public static void runWorker(String coordinator) throws Exception {
+        int colon = coordinator.lastIndexOf(':');
+        try (Socket socket = new Socket(coordinator.substring(0, colon), Integer.parseInt(coordinator.substring(colon + 1)));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            byte[] json = new byte[in.readInt()];
+            in.readFully(json);
+            Config cfg = Config.mapper().readValue(json, Config.class);
+            String dir = in.readUTF();
+            Path segmentDir = dir.isEmpty() ? null : Path.of(dir);
+            try (Metrics metrics = new Metrics(cfg); MonteCarloRunner runner = new MonteCarloRunner(cfg, metrics)) {
+                int batch;
+                while ((batch = in.readInt()) >= 0) {
+                    long t0 = System.nanoTime();
+                    long trades = metrics.trades.sum();
+                    int start = batch * cfg.batchSize;
+                    int count = Math.min(cfg.batchSize, cfg.numSimulations - start);
+                    MonteCarloStats part = new MonteCarloStats(cfg);
+                    ResultColumns columns = segmentDir == null ? null
+                            : new ResultColumns(start, count, MonteCarlo.sampleSize(cfg));
+                    runner.run(start, start + count, part, columns);
+                    if (columns != null) Checkpoint.writeSegment(segmentDir, cfg, batch, columns);
+                    out.writeInt(batch);
+                    out.writeLong(metrics.trades.sum() - trades);
+                    out.writeLong(System.nanoTime() - t0);
+                    part.writeTo(out);
+                    if (cfg.pathStats) runner.takePathStats().writeTo(out);
+                    out.flush();
+                }
+            }
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -6,7 +6,6 @@ import java.io.File;
 import java.util.Arrays;
 
 public class Config {
-    static final ObjectMapper mapper = new ObjectMapper();
     public long startingBalance = 10_000;
     public int numTrades = 250;
     public int reportInterval = 25;
@@ -19,6 +18,8 @@ public class Config {
     public double minRr = 3;
     public double maxRr = 20;
     public int numSampleTrades = 100;
+    // draw each simulation's sample set from this many shared pre-generated sets; 0 = a fresh set per simulation
+    public int samplePoolSize = 0;
     public double winRateLow = 0.28;
     public double winRateHigh = 0.31;
     public double[] riskDecayFactors = new double[] { 1.0, 0.9, 0.8, 0.7, 0.6 };
@@ -27,9 +28,57 @@ public class Config {
     public boolean montyCarlo = false;
     public int batchSize = 10_000;
     public long targetBalance = 50_000_000;
+    // stopping rules: stop once the target is reached, once the balance is at or below ruinBalance,
+    // or once the max drawdown reaches stopDrawdownPct (0 = off); a zero balance always stops
+    public boolean stopAtTarget = false;
+    public long ruinBalance = 0;
+    public double stopDrawdownPct = 0;
     public int numSimulations = 1000;
-    public int numMonteCarloWorkers = 100;
+    // "none"; "antithetic": run 2k + 1 mirrors every draw of run 2k; "stratified": runs cycle through
+    // the pool entries, or the win counts when there is no pool (see Estimates)
+    public String varianceReduction = "none";
+    // adaptive stopping: run batches until the 95% CI half-widths are within these tolerances (absolute
+    // for the rates, relative for the balances at toleranceQuantiles; 0 = unchecked), with numSimulations
+    // and maxSeconds (0 = no limit) as budgets
+    public boolean adaptive = false;
+    public double successRateTolerance = 0.001;
+    public double bankruptcyRateTolerance = 0.001;
+    public double[] toleranceQuantiles = new double[] { 0.05, 0.5, 0.95 };
+    public double quantileTolerance = 0.02;
+    public double maxSeconds = 0;
+    // sample sets the analytic engine mixes over when there is no sample pool
+    public int analyticSampleSets = 256;
+    // platform worker threads for the Monte Carlo pool; 0 = available processors
+    public int numMonteCarloWorkers = 0;
+    // run batches in this many local worker JVMs coordinated by this one (0 = all in this process)
+    public int numProcesses = 0;
+    // run one virtual thread per simulation instead of the worker pool (kept for comparison)
+    public boolean virtualThreads = false;
+    // advance groups of simulations together with the Vector API (needs the vector build profile and --add-modules jdk.incubator.vector)
+    public boolean vectorized = false;
     public boolean printTradeSamples = false;
+    // trade log of the single run, and of each Monte Carlo run in dumpPaths: "csv", "binary" or "none"
+    public String tradeLogFormat = "csv";
+    // Monte Carlo simulation indices whose trades are replayed into montecarlo_path_<index>
+    public long[] dumpPaths = new long[0];
+    // also collect balance and drawdown quantile bands at every trade index (worker pool only)
+    public boolean pathStats = false;
+    // also report final balances over log-scale bins, this many per power of ten (0 = off)
+    public int logBinsPerDecade = 0;
+    // keep every run's result for SimulationSaver; when false only streaming statistics are kept
+    public boolean saveResults = true;
+    // also store each run's sample set in the saved results
+    public boolean saveTradeSamples = false;
+    // write saved results straight into a memory-mapped file instead of heap arrays
+    public boolean offHeapResults = false;
+    // gzip the saved results (montecarlo_results.tsim.gz) on the writer thread; implies streamed, not mapped, writes
+    public boolean compressResults = false;
+    // when set, every finished batch is written to this directory so a crashed run can resume
+    public String checkpointDir = null;
+    public boolean resume = false;
+    // print live progress and throughput every this many seconds (0 = off), also as JSON lines to metricsFile
+    public int metricsIntervalSeconds = 0;
+    public String metricsFile = null;
 
     public Config copyWithSeed(long newSeed) {
         Config c = new Config();
@@ -45,20 +94,57 @@ public class Config {
         c.minRr = this.minRr;
         c.maxRr = this.maxRr;
         c.numSampleTrades = this.numSampleTrades;
+        c.samplePoolSize = this.samplePoolSize;
         c.winRateLow = this.winRateLow;
         c.winRateHigh = this.winRateHigh;
         c.riskDecayFactors = Arrays.copyOf(this.riskDecayFactors, this.riskDecayFactors.length);
         c.montyCarlo = this.montyCarlo;
         c.batchSize = this.batchSize;
         c.targetBalance = this.targetBalance;
+        c.stopAtTarget = this.stopAtTarget;
+        c.ruinBalance = this.ruinBalance;
+        c.stopDrawdownPct = this.stopDrawdownPct;
         c.numSimulations = this.numSimulations;
+        c.varianceReduction = this.varianceReduction;
+        c.adaptive = this.adaptive;
+        c.successRateTolerance = this.successRateTolerance;
+        c.bankruptcyRateTolerance = this.bankruptcyRateTolerance;
+        c.toleranceQuantiles = this.toleranceQuantiles == null ? null
+                : Arrays.copyOf(this.toleranceQuantiles, this.toleranceQuantiles.length);
+        c.quantileTolerance = this.quantileTolerance;
+        c.maxSeconds = this.maxSeconds;
+        c.analyticSampleSets = this.analyticSampleSets;
         c.numMonteCarloWorkers = this.numMonteCarloWorkers;
+        c.numProcesses = this.numProcesses;
+        c.virtualThreads = this.virtualThreads;
+        c.vectorized = this.vectorized;
         c.printTradeSamples = this.printTradeSamples;
+        c.tradeLogFormat = this.tradeLogFormat;
+        c.dumpPaths = this.dumpPaths == null ? null : Arrays.copyOf(this.dumpPaths, this.dumpPaths.length);
+        c.pathStats = this.pathStats;
+        c.logBinsPerDecade = this.logBinsPerDecade;
+        c.saveResults = this.saveResults;
+        c.saveTradeSamples = this.saveTradeSamples;
+        c.offHeapResults = this.offHeapResults;
+        c.compressResults = this.compressResults;
+        c.checkpointDir = this.checkpointDir;
+        c.resume = this.resume;
+        c.metricsIntervalSeconds = this.metricsIntervalSeconds;
+        c.metricsFile = this.metricsFile;
         return c;
     }
 
+    /** Jackson for the JSON beyond config.json (sweeps, cluster handoff, metrics); loaded on first use. */
+    static ObjectMapper mapper() {
+        return Json.MAPPER;
+    }
+
+    private static final class Json {
+        static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+
     public static Config singleRunConfig() throws Exception {
-        Config c = mapper.readValue(Config.class.getResourceAsStream("/config.json"), Config.class);
+        Config c = ConfigParser.read(Config.class.getResourceAsStream("/config.json"));
         c.montyCarlo = false;
         return c;
     }
@@ -71,7 +157,7 @@ public class Config {
         // c.numSimulations = 1_000_000;
         // c.numMonteCarloWorkers = 100_000;
         // return c;
-        Config c = mapper.readValue(Config.class.getResourceAsStream("/config.json"), Config.class);
+        Config c = ConfigParser.read(Config.class.getResourceAsStream("/config.json"));
         return c;
     }
 }
@@ -0,0 +1,216 @@
+package com.tradesim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads config.json and command-line overrides into a {@link Config} without a JSON library, so
+ * short runs do not pay for loading and initializing one. config.json is a flat object whose
+ * values are numbers, booleans, strings, null or arrays of numbers; every key must be a public
+ * Config field, as with the Jackson mapper. An override is {@code name=value}, with arrays as
+ * comma-separated numbers and strings unquoted.
+ */
+final class ConfigParser {
+    private final String s;
+    private int pos;
+
+    private ConfigParser(String s) {
+        this.s = s;
+    }
+
+    static Config read(InputStream in) throws IOException {
+        try (in) {
+            return parse(new String(in.readAllBytes(), StandardCharsets.UTF_8), new Config());
+        }
+    }
+
+    /** Sets every field json names on cfg and returns it. */
+    static Config parse(String json, Config cfg) {
+        ConfigParser p = new ConfigParser(json);
+        p.expect('{');
+        if (!p.consume('}')) {
+            do {
+                String name = p.string();
+                p.expect(':');
+                set(cfg, name, p.value());
+            } while (p.consume(','));
+            p.expect('}');
+        }
+        p.skipSpace();
+        if (p.pos < json.length()) throw p.error("trailing characters");
+        return cfg;
+    }
+
+    /** Applies name=value overrides, in order. */
+    static void override(Config cfg, String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected name=value, got \"" + arg + "\"");
+            String name = arg.substring(0, eq);
+            String text = arg.substring(eq + 1);
+            Class<?> type = field(name).getType();
+            Object value;
+            if (text.equals("null")) {
+                value = null;
+            } else if (type == String.class) {
+                value = text;
+            } else if (type.isArray()) {
+                List<Object> items = new ArrayList<>();
+                for (String item : text.split(",")) {
+                    if (!item.isBlank()) items.add(item.strip());
+                }
+                value = items;
+            } else {
+                value = text;
+            }
+            set(cfg, name, value);
+        }
+    }
+
+    // value is a String (number literals are kept as text), Boolean, List of such, or null
+    private static void set(Config cfg, String name, Object value) {
+        Field f = field(name);
+        Class<?> type = f.getType();
+        try {
+            if (type == long.class) {
+                f.setLong(cfg, value == null ? 0 : Long.parseLong(text(name, value)));
+            } else if (type == int.class) {
+                f.setInt(cfg, value == null ? 0 : Integer.parseInt(text(name, value)));
+            } else if (type == double.class) {
+                f.setDouble(cfg, value == null ? 0 : Double.parseDouble(text(name, value)));
+            } else if (type == boolean.class) {
+                f.setBoolean(cfg, value != null && bool(name, value));
+            } else if (type == String.class) {
+                f.set(cfg, value == null ? null : text(name, value));
+            } else if (type == double[].class) {
+                List<?> items = list(name, value);
+                double[] a = items == null ? null : new double[items.size()];
+                for (int i = 0; a != null && i < a.length; i++) a[i] = Double.parseDouble(text(name, items.get(i)));
+                f.set(cfg, a);
+            } else if (type == long[].class) {
+                List<?> items = list(name, value);
+                long[] a = items == null ? null : new long[items.size()];
+                for (int i = 0; a != null && i < a.length; i++) a[i] = Long.parseLong(text(name, items.get(i)));
+                f.set(cfg, a);
+            } else {
+                throw new IllegalArgumentException("Config field " + name + " has unsupported type " + type);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad value for " + name + ": " + e.getMessage());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field field(String name) {
+        try {
+            Field f = Config.class.getField(name);
+            if (Modifier.isStatic(f.getModifiers())) throw new NoSuchFieldException(name);
+            return f;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("Unknown Config field \"" + name + "\"");
+        }
+    }
+
+    private static String text(String name, Object value) {
+        if (value instanceof String t) return t;
+        throw new IllegalArgumentException("Config field " + name + " expects a number or string, got " + value);
+    }
+
+    private static boolean bool(String name, Object value) {
+        if (value instanceof Boolean b) return b;
+        if ("true".equals(value) || "false".equals(value)) return Boolean.parseBoolean((String) value);
+        throw new IllegalArgumentException("Config field " + name + " expects true or false, got " + value);
+    }
+
+    private static List<?> list(String name, Object value) {
+        if (value == null || value instanceof List<?>) return (List<?>) value;
+        throw new IllegalArgumentException("Config field " + name + " expects an array, got " + value);
+    }
+
+    private Object value() {
+        skipSpace();
+        if (pos >= s.length()) throw error("unexpected end");
+        char c = s.charAt(pos);
+        if (c == '"') return string();
+        if (c == '[') {
+            pos++;
+            List<Object> items = new ArrayList<>();
+            if (!consume(']')) {
+                do {
+                    items.add(value());
+                } while (consume(','));
+                expect(']');
+            }
+            return items;
+        }
+        if (c == '{') throw error("nested objects are not Config values");
+        int start = pos;
+        while (pos < s.length() && "{}[],: \t\r\n".indexOf(s.charAt(pos)) < 0) pos++;
+        String literal = s.substring(start, pos);
+        if (literal.isEmpty()) throw error("expected a value");
+        return switch (literal) {
+            case "true" -> Boolean.TRUE;
+            case "false" -> Boolean.FALSE;
+            case "null" -> null;
+            default -> literal;
+        };
+    }
+
+    private String string() {
+        skipSpace();
+        if (pos >= s.length() || s.charAt(pos) != '"') throw error("expected a string");
+        StringBuilder out = new StringBuilder();
+        for (pos++; pos < s.length(); pos++) {
+            char c = s.charAt(pos);
+            if (c == '"') {
+                pos++;
+                return out.toString();
+            }
+            if (c == '\\') {
+                char e = s.charAt(++pos);
+                switch (e) {
+                    case 'n' -> out.append('\n');
+                    case 't' -> out.append('\t');
+                    case 'r' -> out.append('\r');
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'u' -> {
+                        out.append((char) Integer.parseInt(s.substring(pos + 1, pos + 5), 16));
+                        pos += 4;
+                    }
+                    default -> out.append(e);
+                }
+            } else {
+                out.append(c);
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) throw error("expected '" + c + "'");
+    }
+
+    private boolean consume(char c) {
+        skipSpace();
+        if (pos < s.length() && s.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipSpace() {
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("config.json at offset " + pos + ": " + message);
+    }
+}
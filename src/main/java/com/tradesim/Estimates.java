@@ -0,0 +1,242 @@
+package com.tradesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Standard errors of the Monte Carlo success rate, bankruptcy rate and mean balance under the
+ * configured {@code varianceReduction}. The unit of variance is a run, or with antithetic
+ * sampling a pair (2k, 2k + 1) averaged into one value; with stratified sampling each stratum
+ * keeps its own moments and the estimate is the equal-weight mean of the stratum means. The
+ * moments of single runs are kept as well, to report the variance plain sampling would have had.
+ * Runs are added by simulation index; accumulators of separate workers are combined with
+ * {@link #merge(Estimates)}.
+ */
+public final class Estimates {
+    static final String NONE = "none";
+    static final String ANTITHETIC = "antithetic";
+    static final String STRATIFIED = "stratified";
+
+    static final int SUCCESS = 0;
+    static final int BANKRUPT = 1;
+    static final int BALANCE = 2;
+    static final int METRICS = 3;
+    // two-sided 95% normal quantile
+    static final double Z95 = 1.959963984540054;
+
+    private final boolean antithetic;
+    private final Moments[] strata;
+    private final Moments runs = new Moments();
+    // first run of an antithetic pair whose partner has not been added yet
+    private long pendingIndex = -1;
+    private final double[] pending = new double[METRICS];
+    private final double[] x = new double[METRICS];
+
+    /** Plain sampling: every run is a unit of its own. */
+    public Estimates() {
+        this(false, 1);
+    }
+
+    public Estimates(Config cfg) {
+        this(antithetic(cfg), strata(cfg));
+    }
+
+    private Estimates(boolean antithetic, int strata) {
+        this.antithetic = antithetic;
+        this.strata = new Moments[strata];
+        for (int h = 0; h < strata; h++) this.strata[h] = new Moments();
+    }
+
+    Estimates emptyCopy() {
+        return new Estimates(antithetic, strata.length);
+    }
+
+    static void check(Config cfg) {
+        String mode = cfg.varianceReduction == null ? NONE : cfg.varianceReduction;
+        if (!mode.equals(NONE) && !mode.equals(ANTITHETIC) && !mode.equals(STRATIFIED)) {
+            throw new IllegalArgumentException("Unknown varianceReduction \"" + mode + "\"; use "
+                    + NONE + ", " + ANTITHETIC + " or " + STRATIFIED);
+        }
+        if (antithetic(cfg) && cfg.batchSize % 2 != 0) {
+            throw new IllegalArgumentException("Antithetic pairs must not straddle batches; use an even batchSize");
+        }
+    }
+
+    static boolean antithetic(Config cfg) {
+        return ANTITHETIC.equals(cfg.varianceReduction);
+    }
+
+    static boolean stratified(Config cfg) {
+        return STRATIFIED.equals(cfg.varianceReduction);
+    }
+
+    /** Whether runs depend on more than their own index, so they need the scalar kernel. */
+    static boolean reduced(Config cfg) {
+        return antithetic(cfg) || stratified(cfg);
+    }
+
+    /** Equally likely strata: the pool entries, or the win counts TradeGenerator draws from. */
+    static int strata(Config cfg) {
+        if (!stratified(cfg)) return 1;
+        if (cfg.samplePoolSize > 0) return cfg.samplePoolSize;
+        int low = (int) Math.floor(cfg.numSampleTrades * cfg.winRateLow);
+        int high = (int) Math.floor(cfg.numSampleTrades * cfg.winRateHigh);
+        return Math.max(1, high - low);
+    }
+
+    /** The stratum of simulation index, or -1 when runs are not stratified. */
+    static int stratum(Config cfg, long index) {
+        return stratified(cfg) ? (int) (index % strata(cfg)) : -1;
+    }
+
+    /** Adds the run with simulation index (-1 = unknown, counted as an unpaired run of stratum 0). */
+    public void add(long index, long finalBalance, long targetBalance) {
+        x[SUCCESS] = finalBalance >= targetBalance ? 1 : 0;
+        x[BANKRUPT] = finalBalance == 0 ? 1 : 0;
+        x[BALANCE] = finalBalance;
+        runs.add(x);
+        if (!antithetic || index < 0) {
+            strata[index < 0 ? 0 : (int) (index % strata.length)].add(x);
+        } else if ((index & 1) == 0) {
+            flush();
+            pendingIndex = index;
+            System.arraycopy(x, 0, pending, 0, METRICS);
+        } else if (pendingIndex == index - 1) {
+            for (int m = 0; m < METRICS; m++) x[m] = (x[m] + pending[m]) / 2;
+            pendingIndex = -1;
+            strata[0].add(x);
+        } else {
+            strata[0].add(x);
+        }
+    }
+
+    // a pair whose partner never came counts as a unit of one run
+    private void flush() {
+        if (pendingIndex < 0) return;
+        pendingIndex = -1;
+        strata[0].add(pending);
+    }
+
+    public void merge(Estimates other) {
+        flush();
+        other.flush();
+        runs.merge(other.runs);
+        for (int h = 0; h < strata.length; h++) strata[h].merge(other.strata[h]);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        flush();
+        out.writeBoolean(antithetic);
+        out.writeInt(strata.length);
+        runs.writeTo(out);
+        for (Moments s : strata) s.writeTo(out);
+    }
+
+    public static Estimates readFrom(DataInput in) throws IOException {
+        Estimates e = new Estimates(in.readBoolean(), in.readInt());
+        e.runs.readFrom(in);
+        for (Moments s : e.strata) s.readFrom(in);
+        return e;
+    }
+
+    public long runs() {
+        return runs.n;
+    }
+
+    /** Units of variance: runs, or antithetic pairs. */
+    public long units() {
+        flush();
+        long n = 0;
+        for (Moments s : strata) n += s.n;
+        return n;
+    }
+
+    /** The estimate of metric (SUCCESS, BANKRUPT or BALANCE): mean over the non-empty strata. */
+    public double estimate(int metric) {
+        flush();
+        double sum = 0;
+        int k = 0;
+        for (Moments s : strata) {
+            if (s.n == 0) continue;
+            sum += s.mean[metric];
+            k++;
+        }
+        return k == 0 ? 0 : sum / k;
+    }
+
+    public double standardError(int metric) {
+        return Math.sqrt(variance(metric));
+    }
+
+    /** Half-width of the 95% confidence interval around {@link #estimate(int)}. */
+    public double halfWidth(int metric) {
+        return Z95 * standardError(metric);
+    }
+
+    // variance of the estimate: sum over strata of (1/k)^2 s_h^2 / n_h
+    private double variance(int metric) {
+        flush();
+        double sum = 0;
+        int k = 0;
+        for (Moments s : strata) {
+            if (s.n == 0) continue;
+            sum += s.variance(metric) / s.n;
+            k++;
+        }
+        return k == 0 ? 0 : sum / ((double) k * k);
+    }
+
+    /** Variance of the plain mean of as many independent runs, over that of this estimate. */
+    public double efficiency(int metric) {
+        double v = variance(metric);
+        return v == 0 ? Double.NaN : runs.variance(metric) / runs.n / v;
+    }
+
+    // count, running means and sums of squared deviations (Welford, merged with Chan's update)
+    private static final class Moments {
+        long n;
+        final double[] mean = new double[METRICS];
+        final double[] m2 = new double[METRICS];
+
+        void add(double[] x) {
+            n++;
+            for (int m = 0; m < METRICS; m++) {
+                double d = x[m] - mean[m];
+                mean[m] += d / n;
+                m2[m] += d * (x[m] - mean[m]);
+            }
+        }
+
+        void merge(Moments o) {
+            if (o.n == 0) return;
+            long total = n + o.n;
+            for (int m = 0; m < METRICS; m++) {
+                double d = o.mean[m] - mean[m];
+                mean[m] += d * o.n / total;
+                m2[m] += o.m2[m] + d * d * ((double) n * o.n / total);
+            }
+            n = total;
+        }
+
+        double variance(int metric) {
+            return n < 2 ? 0 : m2[metric] / (n - 1);
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeLong(n);
+            for (int m = 0; m < METRICS; m++) {
+                out.writeDouble(mean[m]);
+                out.writeDouble(m2[m]);
+            }
+        }
+
+        void readFrom(DataInput in) throws IOException {
+            n = in.readLong();
+            for (int m = 0; m < METRICS; m++) {
+                mean[m] = in.readDouble();
+                m2[m] = in.readDouble();
+            }
+        }
+    }
+}
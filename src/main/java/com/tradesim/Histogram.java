@@ -0,0 +1,197 @@
+package com.tradesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Mergeable log-linear histogram for non-negative longs (HDR style). Values below 2^precisionBits
+ * are counted exactly; above that every power-of-two range is split into 2^precisionBits buckets,
+ * so the relative error of a reported value is bounded by 2^-precisionBits.
+ */
+public class Histogram {
+    public static final int DEFAULT_PRECISION_BITS = 7;
+    // below this many values per task, splitting a pass costs more than it saves
+    private static final int MIN_TASK_VALUES = 1 << 16;
+
+    final int precisionBits;
+    final long[] counts;
+    long totalCount;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+
+    public Histogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    public Histogram(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("precisionBits must be between 1 and 16: " + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+        this.counts = new long[(64 - precisionBits) << precisionBits];
+    }
+
+    /** Histogram of values[0..n), built in one parallel pass; see {@link #of(int, IntToLongFunction, int)}. */
+    public static Histogram of(long[] values) {
+        return of(values.length, i -> values[i], DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * Histogram of the n values value(0) .. value(n - 1), built in one parallel pass: each task
+     * records a contiguous range into its own histogram and the parts are merged.
+     */
+    public static Histogram of(int n, IntToLongFunction value, int precisionBits) {
+        int tasks = parallelTasks(n);
+        return IntStream.range(0, tasks).parallel().mapToObj(t -> {
+            Histogram part = new Histogram(precisionBits);
+            for (int i = taskStart(n, tasks, t), end = taskStart(n, tasks, t + 1); i < end; i++) {
+                part.record(value.applyAsLong(i));
+            }
+            return part;
+        }).reduce((a, b) -> {
+            a.merge(b);
+            return a;
+        }).orElseGet(() -> new Histogram(precisionBits));
+    }
+
+    /** Number of ranges to split a pass over n values into for the common pool. */
+    static int parallelTasks(int n) {
+        return Math.max(1, Math.min(n / MIN_TASK_VALUES, 4 * ForkJoinPool.getCommonPoolParallelism()));
+    }
+
+    static int taskStart(int n, int tasks, int task) {
+        return (int) ((long) n * task / tasks);
+    }
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    public void record(long value, long count) {
+        if (value < 0) value = 0;
+        counts[bucketIndex(value)] += count;
+        totalCount += count;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    public void merge(Histogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot merge histograms with different precision");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /** Writes the histogram compactly: the header, then only the non-empty buckets. */
+    public void writeTo(DataOutput out) throws IOException {
+        int nonEmpty = 0;
+        for (long c : counts) {
+            if (c != 0) nonEmpty++;
+        }
+        out.writeByte(precisionBits);
+        out.writeLong(totalCount);
+        out.writeLong(min);
+        out.writeLong(max);
+        out.writeInt(nonEmpty);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            out.writeInt(i);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    public static Histogram readFrom(DataInput in) throws IOException {
+        Histogram h = new Histogram(in.readByte());
+        h.totalCount = in.readLong();
+        h.min = in.readLong();
+        h.max = in.readLong();
+        for (int n = in.readInt(); n > 0; n--) {
+            h.counts[in.readInt()] = in.readLong();
+        }
+        return h;
+    }
+
+    public long count() {
+        return totalCount;
+    }
+
+    public long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return totalCount == 0 ? 0 : max;
+    }
+
+    /** Value at the given 0-based rank in sorted order, i.e. the equivalent of sorted[rank]. */
+    public long valueAtRank(long rank) {
+        if (totalCount == 0) return 0;
+        rank = Math.max(0, Math.min(rank, totalCount - 1));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                long mid = lowerBound(i) + (upperBound(i) - lowerBound(i)) / 2;
+                return Math.max(min, Math.min(max, mid));
+            }
+        }
+        return max;
+    }
+
+    /** Same indexing as the sorted-array code in Analyze: sorted[(int) (n * q)]. */
+    public long valueAtQuantile(double q) {
+        return valueAtRank((long) (totalCount * q));
+    }
+
+    /** Approximate number of recorded values in [from, to), interpolating linearly inside buckets. */
+    public double countBetween(long from, long to) {
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            long lo = lowerBound(i);
+            long hi = upperBound(i) + 1;
+            long overlapLo = Math.max(lo, from);
+            long overlapHi = Math.min(hi, to);
+            if (overlapHi <= overlapLo) continue;
+            total += counts[i] * ((double) (overlapHi - overlapLo) / (hi - lo));
+        }
+        return total;
+    }
+
+    int bucketIndex(long value) {
+        if (value < (1L << precisionBits)) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - precisionBits;
+        long mantissa = value >>> shift;
+        return ((shift + 1) << precisionBits) + (int) (mantissa - (1L << precisionBits));
+    }
+
+    long lowerBound(int index) {
+        int block = index >>> precisionBits;
+        if (block == 0) return index;
+        long mantissa = (index & ((1L << precisionBits) - 1)) + (1L << precisionBits);
+        return mantissa << (block - 1);
+    }
+
+    long upperBound(int index) {
+        int block = index >>> precisionBits;
+        if (block == 0) return index;
+        return lowerBound(index) + (1L << (block - 1)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{count=" + totalCount + ", min=" + min() + ", max=" + max()
+                + ", buckets=" + Arrays.stream(counts).filter(c -> c > 0).count() + "}";
+    }
+}
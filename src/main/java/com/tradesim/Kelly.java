@@ -5,12 +5,43 @@ import com.tradesim.model.Trade;
 import java.util.List;
 
 public class Kelly {
+    /** One pass over the trades; the average uses the compensated sum DoubleStream.average does. */
     public static double calculateKellyFraction(List<Trade> trades) {
         if (trades == null || trades.isEmpty()) return 0.01;
-        long wins = trades.stream().filter(Trade::win).count();
+        int wins = 0;
+        double sum = 0.0, compensation = 0.0;
+        for (Trade trade : trades) {
+            if (!trade.win()) continue;
+            wins++;
+            double y = trade.rrr() - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
         double winRate = (double) wins / trades.size();
-        double avgRrr = trades.stream().filter(Trade::win).mapToDouble(Trade::rrr).average().orElse(1.0);
+        double avgRrr = wins == 0 ? 1.0 : (sum - compensation) / wins;
+        return kelly(winRate, avgRrr);
+    }
+
+    /** Same result as the List version, over the packed sample set. */
+    public static double calculateKellyFraction(SampleSet samples) {
+        if (samples.size() == 0) return 0.01;
+        int wins = 0;
+        double sum = 0.0, compensation = 0.0;
+        for (int i = 0; i < samples.size(); i++) {
+            if (!samples.win(i)) continue;
+            wins++;
+            double y = samples.rrr(i) - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+        double winRate = (double) wins / samples.size();
+        double avgRrr = wins == 0 ? 1.0 : (sum - compensation) / wins;
+        return kelly(winRate, avgRrr);
+    }
 
+    private static double kelly(double winRate, double avgRrr) {
         if (avgRrr <= 0 || winRate <= 0) return 0.01;
         double kelly = (winRate * (avgRrr + 1) - 1) / avgRrr;
         kelly = Math.max(0.0, Math.min(kelly, 1.0));
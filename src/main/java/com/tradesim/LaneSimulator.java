@@ -0,0 +1,37 @@
+package com.tradesim;
+
+import com.tradesim.model.StopReason;
+
+/**
+ * A group of simulations advanced together, one per lane, with the results of the last group
+ * left in the lane arrays. The only implementation is the Vector API engine
+ * ({@code VectorSimulator} in {@code src/vector/java}), which is compiled by the {@code vector}
+ * profile and loaded reflectively by {@link MonteCarloRunner#checkEngine}, so the default build
+ * does not need the incubating module.
+ */
+abstract class LaneSimulator {
+    final long[] balance;
+    final double[] maxDrawdown;
+    final int[] executed;
+    final int[] targetTrade;
+    final StopReason[] stop;
+
+    LaneSimulator(int group) {
+        balance = new long[group];
+        maxDrawdown = new double[group];
+        executed = new int[group];
+        targetTrade = new int[group];
+        stop = new StopReason[group];
+    }
+
+    /** Simulations advanced together; the largest count {@link #simulate} accepts. */
+    int group() {
+        return balance.length;
+    }
+
+    /** Simulates indices [firstIndex, firstIndex + count); results are left in the lane arrays. */
+    abstract void simulate(long firstIndex, int count);
+
+    /** The sample set of a lane's simulation in the last group. */
+    abstract SampleSet samples(int lane);
+}
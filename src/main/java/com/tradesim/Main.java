@@ -1,13 +1,40 @@
 package com.tradesim;
 
+import java.nio.file.Path;
+
+/**
+ * Entry point. -Dmode picks the run (none = single run, mc, sweep, analytic, worker); every
+ * argument is a Config override of the form name=value, applied on top of config.json.
+ */
 public class Main {
     public static void main(String[] args) throws Exception {
         Config cfg;
+        if ("worker".equals(System.getProperty("mode"))) {
+            Cluster.runWorker(System.getProperty("coordinator"));
+            return;
+        }
+        if ("analytic".equals(System.getProperty("mode"))) {
+            cfg = Config.montyConfig();
+            ConfigParser.override(cfg, args);
+            long start = System.nanoTime();
+            AnalyticEngine.Result result = AnalyticEngine.run(cfg);
+            AnalyticEngine.printSummary(cfg, result, (System.nanoTime() - start) / 1e6);
+            return;
+        }
+        if ("sweep".equals(System.getProperty("mode"))) {
+            long start = System.currentTimeMillis();
+            cfg = Config.montyConfig();
+            ConfigParser.override(cfg, args);
+            Sweep.run(cfg, Path.of(System.getProperty("sweep", "sweep.json")));
+            System.out.printf("Sweep completed in %.2f seconds.%n", (System.currentTimeMillis() - start) / 1000.0);
+            return;
+        }
         if(System.getProperty("mode") == null) {
             cfg = Config.singleRunConfig();
         } else {
             cfg = Config.montyConfig();
         }
+        ConfigParser.override(cfg, args);
 
         long start = System.currentTimeMillis();
         if(cfg.montyCarlo) {
@@ -0,0 +1,195 @@
+package com.tradesim;
+
+import com.tradesim.model.StopReason;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A results file written in place: the file is laid out up front for every simulation index,
+ * each column of each block is mapped read-write, and workers store straight into the mapping.
+ * Nothing per-run lives on the heap, so heap use does not grow with numSimulations. The file
+ * is built as {@code <path>.tmp}; {@link #finish()} fills in the hit and bankrupt bitsets,
+ * forces the mappings and renames it, after which it reads like any other results file.
+ */
+public class MappedResultStore implements ResultStore, AutoCloseable {
+    // win bits of neighbouring runs can share a word, so those are set atomically
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path path;
+    private final Path tmp;
+    private final FileChannel channel;
+    private final long targetBalance;
+    private final int sampleSize;
+    private final int blockResults;
+    private final Block[] blocks;
+    private boolean finished;
+
+    private final class Block {
+        final int n;
+        final MappedByteBuffer finalBalance;
+        final MappedByteBuffer maxDrawdown;
+        final MappedByteBuffer tradesExecuted;
+        final MappedByteBuffer targetTrade;
+        final MappedByteBuffer stopReason;
+        final MappedByteBuffer hitBits;
+        final MappedByteBuffer bankruptBits;
+        final MappedByteBuffer sampleRrr;
+        final MappedByteBuffer sampleWin;
+
+        // same column layout as ResultsFile.Writer and MappedResults
+        Block(long position, long startIndex, int n) throws IOException {
+            this.n = n;
+            channel.write(ResultsFile.blockHeader(n, startIndex, sampleSize), position);
+            long p = position + ResultsFile.BLOCK_HEADER_BYTES;
+            finalBalance = map(p, 8L * n);
+            p += 8L * n;
+            maxDrawdown = map(p, 8L * n);
+            p += 8L * n;
+            tradesExecuted = map(p, 4L * n);
+            p += ResultsFile.align8(4L * n);
+            targetTrade = map(p, 4L * n);
+            p += ResultsFile.align8(4L * n);
+            stopReason = map(p, n);
+            p += ResultsFile.align8(n);
+            hitBits = map(p, 8 * ResultsFile.words(n));
+            p += 8 * ResultsFile.words(n);
+            bankruptBits = map(p, 8 * ResultsFile.words(n));
+            p += 8 * ResultsFile.words(n);
+            if (sampleSize > 0) {
+                long samples = (long) n * sampleSize;
+                sampleRrr = map(p, 8 * samples);
+                p += 8 * samples;
+                sampleWin = map(p, 8 * ResultsFile.words(samples));
+            } else {
+                sampleRrr = null;
+                sampleWin = null;
+            }
+        }
+
+        void fillBits() {
+            for (int w = 0; w < ResultsFile.words(n); w++) {
+                long hit = 0, bankrupt = 0;
+                for (int bit = 0; bit < 64 && 64 * w + bit < n; bit++) {
+                    long balance = finalBalance.getLong(8 * (64 * w + bit));
+                    if (balance >= targetBalance) hit |= 1L << bit;
+                    if (balance == 0) bankrupt |= 1L << bit;
+                }
+                hitBits.putLong(8 * w, hit);
+                bankruptBits.putLong(8 * w, bankrupt);
+            }
+        }
+
+        void force() {
+            for (MappedByteBuffer b : new MappedByteBuffer[]{finalBalance, maxDrawdown, tradesExecuted, targetTrade,
+                    stopReason, hitBits, bankruptBits, sampleRrr, sampleWin}) {
+                if (b != null) b.force();
+            }
+        }
+    }
+
+    private MappedResultStore(Path path, Config cfg, int sampleSize) throws IOException {
+        this.path = path;
+        this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.targetBalance = cfg.targetBalance;
+        this.sampleSize = sampleSize;
+        // a block's sample column must fit one mapping as well
+        this.blockResults = sampleSize > 0
+                ? Math.min(ResultsFile.MAX_BLOCK_RESULTS, Integer.MAX_VALUE / (8 * sampleSize))
+                : ResultsFile.MAX_BLOCK_RESULTS;
+        this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            int count = cfg.numSimulations;
+            this.blocks = new Block[(count + blockResults - 1) / blockResults];
+            long position = channel.write(ResultsFile.fileHeader(cfg), 0);
+            for (int b = 0; b < blocks.length; b++) {
+                int n = Math.min(blockResults, count - b * blockResults);
+                blocks[b] = new Block(position, (long) b * blockResults, n);
+                position += ResultsFile.BLOCK_HEADER_BYTES + ResultsFile.payloadLength(n, sampleSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /** Lays out a results file at path for all of cfg's simulations, sampleSize trades each (0 = none). */
+    public static MappedResultStore create(Path path, Config cfg, int sampleSize) throws IOException {
+        return new MappedResultStore(path, cfg, sampleSize);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long count() {
+        long n = 0;
+        for (Block b : blocks) n += b.n;
+        return n;
+    }
+
+    @Override
+    public void set(long index, long balance, double drawdown, int trades, int target, StopReason stop) {
+        Block b = blocks[(int) (index / blockResults)];
+        int i = (int) (index % blockResults);
+        b.finalBalance.putLong(8 * i, balance);
+        b.maxDrawdown.putDouble(8 * i, drawdown);
+        b.tradesExecuted.putInt(4 * i, trades);
+        b.targetTrade.putInt(4 * i, target);
+        b.stopReason.put(i, stop.code());
+    }
+
+    @Override
+    public boolean hasSamples() {
+        return sampleSize > 0;
+    }
+
+    @Override
+    public void setSamples(long index, SampleSet samples) {
+        Block b = blocks[(int) (index / blockResults)];
+        long offset = (index % blockResults) * sampleSize;
+        int n = Math.min(sampleSize, samples.size());
+        for (int j = 0; j < n; j++) {
+            long k = offset + j;
+            b.sampleRrr.putDouble((int) (8 * k), samples.rrr[j]);
+            if (samples.win(j)) {
+                WORDS.getAndBitwiseOr(b.sampleWin, (int) (8 * (k >>> 6)), 1L << k);
+            }
+        }
+    }
+
+    /** Completes the file once every index has been written; it then replaces path. */
+    public void finish() throws IOException {
+        for (Block b : blocks) {
+            b.fillBits();
+            b.force();
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    /** Discards the partial file unless {@link #finish()} completed. */
+    @Override
+    public void close() throws IOException {
+        if (finished) return;
+        channel.close();
+        Files.deleteIfExists(tmp);
+    }
+}
@@ -0,0 +1,257 @@
+package com.tradesim;
+
+import com.tradesim.model.StopReason;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Read-only view of a results file. Only the header and block headers are decoded on open;
+ * every column is a memory-mapped primitive buffer, so nothing per-run lives on the heap.
+ * Version 1 files have no targetTrade / stopReason columns; {@link #hasStopColumns()} is false.
+ * A compressed (.gz) file is first inflated into a temporary file, deleted again on close.
+ */
+public class MappedResults implements AutoCloseable {
+    private final FileChannel channel;
+    private final Config config;
+    private final int version;
+    private final List<Block> blocks = new ArrayList<>();
+    private long count;
+
+    public class Block {
+        final ResultsFile.BlockHeader header;
+        final LongBuffer finalBalance;
+        final DoubleBuffer maxDrawdown;
+        final IntBuffer tradesExecuted;
+        final IntBuffer targetTrade;
+        final ByteBuffer stopReason;
+        final LongBuffer hitBits;
+        final LongBuffer bankruptBits;
+        final long samplesOffset;
+
+        Block(ResultsFile.BlockHeader header) throws IOException {
+            this.header = header;
+            long n = header.count();
+            long p = header.payloadOffset();
+            finalBalance = map(p, 8 * n).asLongBuffer();
+            p += 8 * n;
+            maxDrawdown = map(p, 8 * n).asDoubleBuffer();
+            p += 8 * n;
+            tradesExecuted = map(p, 4 * n).asIntBuffer();
+            p += ResultsFile.align8(4 * n);
+            if (version >= 2) {
+                targetTrade = map(p, 4 * n).asIntBuffer();
+                p += ResultsFile.align8(4 * n);
+                stopReason = map(p, n);
+                p += ResultsFile.align8(n);
+            } else {
+                targetTrade = null;
+                stopReason = null;
+            }
+            hitBits = map(p, 8 * ResultsFile.words(n)).asLongBuffer();
+            p += 8 * ResultsFile.words(n);
+            bankruptBits = map(p, 8 * ResultsFile.words(n)).asLongBuffer();
+            samplesOffset = p + 8 * ResultsFile.words(n);
+        }
+
+        public long startIndex() {
+            return header.startIndex();
+        }
+
+        public int count() {
+            return header.count();
+        }
+
+        public LongBuffer finalBalances() {
+            return finalBalance.duplicate();
+        }
+
+        public DoubleBuffer maxDrawdowns() {
+            return maxDrawdown.duplicate();
+        }
+
+        public IntBuffer tradesExecuted() {
+            return tradesExecuted.duplicate();
+        }
+
+        /** Trades until the target was first reached, 0 if never; version 2 files only. */
+        public IntBuffer targetTrades() {
+            return targetTrade.duplicate();
+        }
+
+        public StopReason stopReason(int i) {
+            return StopReason.fromCode(stopReason.get(i));
+        }
+
+        // absolute gets only, so tasks can share the buffers
+        void addTo(MonteCarloStats stats, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (targetTrade == null) {
+                    stats.add(startIndex() + i, finalBalance.get(i), maxDrawdown.get(i));
+                } else {
+                    stats.add(startIndex() + i, finalBalance.get(i), maxDrawdown.get(i), targetTrade.get(i), stopReason(i));
+                }
+            }
+        }
+
+        public long hits() {
+            return bitCount(hitBits);
+        }
+
+        public long bankrupt() {
+            return bitCount(bankruptBits);
+        }
+
+        public int sampleSize() {
+            return header.sampleSize();
+        }
+
+        /** The block's trade-sample rrr values, mapped on first use; sampleSize entries per run. */
+        public DoubleBuffer sampleRrr() throws IOException {
+            if (header.sampleSize() == 0) throw new IllegalStateException("Block has no trade samples");
+            return map(samplesOffset, 8L * header.count() * header.sampleSize()).asDoubleBuffer();
+        }
+    }
+
+    private MappedResults(FileChannel channel) throws IOException {
+        this.channel = channel;
+        try {
+            ResultsFile.Header header = ResultsFile.readHeader(channel);
+            config = header.config();
+            version = header.version();
+            long position = header.firstBlockOffset();
+            long size = channel.size();
+            while (position < size) {
+                ResultsFile.BlockHeader bh = ResultsFile.readBlockHeader(channel, position);
+                blocks.add(new Block(bh));
+                count += bh.count();
+                position = bh.nextBlockOffset();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static MappedResults open(Path path) throws IOException {
+        if (!ResultsFile.compressed(path)) return new MappedResults(FileChannel.open(path, StandardOpenOption.READ));
+        Path tmp = Files.createTempFile("tradesim-", ".tsim");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path), 1 << 20)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return new MappedResults(FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    public boolean hasStopColumns() {
+        return version >= 2;
+    }
+
+    public List<Block> blocks() {
+        return blocks;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long hits() {
+        return blocks.stream().mapToLong(Block::hits).sum();
+    }
+
+    public long bankrupt() {
+        return blocks.stream().mapToLong(Block::bankrupt).sum();
+    }
+
+    /**
+     * Folds every run into stats in one parallel pass over the mapped columns: each task
+     * accumulates a range into its own MonteCarloStats and the parts are merged.
+     */
+    public void addTo(MonteCarloStats stats) {
+        for (Block b : blocks) {
+            int n = b.count();
+            int tasks = Histogram.parallelTasks(n);
+            IntStream.range(0, tasks).parallel().mapToObj(t -> {
+                MonteCarloStats part = stats.emptyCopy();
+                b.addTo(part, pairStart(n, tasks, t), pairStart(n, tasks, t + 1));
+                return part;
+            }).toList().forEach(stats::merge);
+        }
+    }
+
+    // task boundaries stay even so an antithetic pair is never split between tasks
+    private static int pairStart(int n, int tasks, int task) {
+        return task == tasks ? n : Histogram.taskStart(n, tasks, task) & ~1;
+    }
+
+    /** Histogram of every final balance, built in one parallel pass. */
+    public Histogram balanceHistogram() {
+        Histogram h = new Histogram();
+        for (Block b : blocks) {
+            LongBuffer balances = b.finalBalances();
+            h.merge(Histogram.of(b.count(), balances::get, h.precisionBits));
+        }
+        return h;
+    }
+
+    /** Copies every final balance into one array, in file order. */
+    public long[] finalBalances() {
+        long[] out = new long[Math.toIntExact(count)];
+        int k = 0;
+        for (Block b : blocks) {
+            b.finalBalances().get(out, k, b.count());
+            k += b.count();
+        }
+        return out;
+    }
+
+    public double[] maxDrawdowns() {
+        double[] out = new double[Math.toIntExact(count)];
+        int k = 0;
+        for (Block b : blocks) {
+            b.maxDrawdowns().get(out, k, b.count());
+            k += b.count();
+        }
+        return out;
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    private static long bitCount(LongBuffer words) {
+        long total = 0;
+        for (int i = 0, n = words.limit(); i < n; i++) {
+            total += Long.bitCount(words.get(i));
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,183 @@
+package com.tradesim;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters for a Monte Carlo run. Workers publish once per chunk of simulations, so the
+ * adders see little contention; chunk latencies (microseconds) go into histograms for the whole
+ * run and for the current reporting interval. With {@code metricsIntervalSeconds} set, a daemon
+ * thread prints a progress line at that interval, with throughput and GC time since the last
+ * line, and appends the same figures as JSON lines to {@code metricsFile} when configured.
+ * Chunks and saves are also recorded as JFR events (enable with {@code -XX:StartFlightRecording}).
+ */
+public final class Metrics implements AutoCloseable {
+    private final long total;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    final LongAdder simulations = new LongAdder();
+    final LongAdder trades = new LongAdder();
+    final LongAdder bankruptcies = new LongAdder();
+    final LongAdder targetHits = new LongAdder();
+    private final Histogram chunkMicros = new Histogram();
+    private Histogram intervalChunkMicros = new Histogram();
+
+    private final ScheduledExecutorService reporter;
+    private final PrintWriter jsonLines;
+    private long lastNanos = startNanos;
+    private long lastSimulations;
+    private long lastTrades;
+    private long lastGcMillis = gcMillis();
+
+    public Metrics(Config cfg) throws IOException {
+        this.total = cfg.numSimulations;
+        this.jsonLines = cfg.metricsFile == null || cfg.metricsFile.isEmpty()
+                ? null
+                : new PrintWriter(Files.newBufferedWriter(Path.of(cfg.metricsFile)));
+        if (cfg.metricsIntervalSeconds > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().daemon().name("metrics-reporter").factory());
+            reporter.scheduleAtFixedRate(this::report, cfg.metricsIntervalSeconds, cfg.metricsIntervalSeconds,
+                    TimeUnit.SECONDS);
+        } else {
+            reporter = null;
+        }
+    }
+
+    /** Publishes a finished chunk of simulations. */
+    void chunk(long sims, long tradeCount, long bankrupt, long hits, long nanos) {
+        simulations.add(sims);
+        trades.add(tradeCount);
+        bankruptcies.add(bankrupt);
+        targetHits.add(hits);
+        long micros = nanos / 1000;
+        synchronized (this) {
+            chunkMicros.record(micros);
+            intervalChunkMicros.record(micros);
+        }
+    }
+
+    public long simulations() {
+        return simulations.sum();
+    }
+
+    /** Seconds since the run started, or its total duration once closed. */
+    public double elapsedSeconds() {
+        return ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1e9;
+    }
+
+    private static long gcMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += Math.max(0, gc.getCollectionTime());
+        }
+        return ms;
+    }
+
+    /** Figures since the previous call (rates, GC time, chunk latency) plus the running totals. */
+    synchronized Map<String, Object> sample() {
+        long now = System.nanoTime();
+        long sims = simulations.sum();
+        long tradeCount = trades.sum();
+        long gc = gcMillis();
+        double seconds = Math.max(1e-9, (now - lastNanos) / 1e9);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("elapsed_s", Math.round((now - startNanos) / 1e6) / 1e3);
+        m.put("simulations", sims);
+        m.put("total", total);
+        m.put("trades", tradeCount);
+        m.put("bankruptcies", bankruptcies.sum());
+        m.put("target_hits", targetHits.sum());
+        m.put("sims_per_s", Math.round((sims - lastSimulations) / seconds));
+        m.put("trades_per_s", Math.round((tradeCount - lastTrades) / seconds));
+        m.put("chunk_p50_ms", intervalChunkMicros.valueAtQuantile(0.5) / 1e3);
+        m.put("chunk_p99_ms", intervalChunkMicros.valueAtQuantile(0.99) / 1e3);
+        m.put("chunk_max_ms", intervalChunkMicros.max() / 1e3);
+        m.put("gc_ms", gc - lastGcMillis);
+        m.put("heap_used_mb", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+        lastNanos = now;
+        lastSimulations = sims;
+        lastTrades = tradeCount;
+        lastGcMillis = gc;
+        intervalChunkMicros = new Histogram();
+        return m;
+    }
+
+    private void report() {
+        Map<String, Object> m = sample();
+        System.out.printf("Progress %,d/%,d (%.1f%%): %,d sims/s, %,d trades/s, chunk p50 %.1f ms p99 %.1f ms max %.1f ms, GC %d ms, heap %d MB%n",
+                m.get("simulations"), total, 100.0 * (long) m.get("simulations") / Math.max(1, total),
+                m.get("sims_per_s"), m.get("trades_per_s"), m.get("chunk_p50_ms"), m.get("chunk_p99_ms"),
+                m.get("chunk_max_ms"), m.get("gc_ms"), m.get("heap_used_mb"));
+        if (jsonLines != null) {
+            try {
+                jsonLines.println(Config.mapper().writeValueAsString(m));
+                jsonLines.flush();
+            } catch (IOException e) {
+                System.err.println("Could not write metrics: " + e);
+            }
+        }
+    }
+
+    /** Whole-run figures, for the end of the summary. */
+    public synchronized void printTotals() {
+        double seconds = Math.max(1e-9, elapsedSeconds());
+        System.out.printf("Throughput: %,.0f sims/s, %,.0f trades/s (%,d trades in %.2f s)%n",
+                simulations.sum() / seconds, trades.sum() / seconds, trades.sum(), seconds);
+        if (chunkMicros.count() > 0) {
+            System.out.printf("Chunk latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms over %,d chunks%n",
+                    chunkMicros.valueAtQuantile(0.5) / 1e3, chunkMicros.valueAtQuantile(0.99) / 1e3,
+                    chunkMicros.max() / 1e3, chunkMicros.count());
+        }
+    }
+
+    @Override
+    public void close() {
+        endNanos = System.nanoTime();
+        if (reporter != null) reporter.shutdownNow();
+        // a last line with the final totals
+        if (reporter != null || jsonLines != null) report();
+        if (jsonLines != null) jsonLines.close();
+    }
+
+    @Name("com.tradesim.Chunk")
+    @Label("Simulation Chunk")
+    @Category("TradeSim")
+    static class ChunkEvent extends Event {
+        @Label("First Index")
+        long firstIndex;
+        @Label("Simulations")
+        int simulations;
+        @Label("Trades")
+        long trades;
+    }
+
+    @Name("com.tradesim.Save")
+    @Label("Results Save")
+    @Category("TradeSim")
+    static class SaveEvent extends Event {
+        @Label("Path")
+        String path;
+        @Label("Simulations")
+        long simulations;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+}
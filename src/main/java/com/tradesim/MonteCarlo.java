@@ -1,83 +1,250 @@
 package com.tradesim;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tradesim.model.SimulationResult;
+import com.tradesim.model.StopReason;
 import com.tradesim.model.Trade;
 
-import java.io.PrintWriter;
-import java.time.Instant;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 
 public class MonteCarlo {
     static String dashbar = "=".repeat(80);
 
     public static void runMonteCarloParallel(Config cfg) throws Exception {
+        checkDumpPaths(cfg);
+        StoppingRule.check(cfg);
+        MonteCarloStats stats = new MonteCarloStats(cfg);
+        Metrics metrics = new Metrics(cfg);
+        PathStats paths;
+        try (metrics) {
+            paths = cfg.numProcesses > 0 ? runOnProcesses(cfg, stats, metrics) : runInProcess(cfg, stats, metrics);
+        }
+
+        printSummary(cfg, stats);
+        metrics.printTotals();
+        Analyze.analyzeBalances(stats.balanceHistogram());
+        if (cfg.logBinsPerDecade > 0) Analyze.analyzeLogScale(stats.balanceHistogram(), cfg.logBinsPerDecade);
+        if (paths != null) {
+            Analyze.analyzePaths(paths, cfg.reportInterval);
+            paths.write(Path.of("montecarlo_paths.csv"));
+            System.out.println("Saved balance and drawdown bands for every trade to: montecarlo_paths.csv");
+        }
+    }
+
+    private static PathStats runInProcess(Config cfg, MonteCarloStats stats, Metrics metrics) throws Exception {
+        try (MonteCarloRunner runner = new MonteCarloRunner(cfg, metrics)) {
+            System.out.println("Running Monte Carlo with " + (cfg.adaptive ? "up to " : "")
+                    + String.format("%,d", cfg.numSimulations) + " simulations on " + runner.describe()
+                    + "... (batch=" + cfg.batchSize + ")");
+            PathStats paths = runner.pathStats();
+            if (cfg.adaptive) {
+                runAdaptive(cfg, runner, stats);
+            } else if (cfg.checkpointDir != null && !cfg.checkpointDir.isEmpty()) {
+                paths = runWithCheckpoints(cfg, runner, stats);
+            } else if (cfg.saveResults && cfg.offHeapResults && !cfg.compressResults) {
+                try (MappedResultStore store = MappedResultStore.create(ResultsFile.defaultPath(cfg), cfg,
+                        sampleSize(cfg))) {
+                    runner.run(0, cfg.numSimulations, stats, store);
+                    SimulationSaver.saveSimulationResults(store);
+                }
+            } else if (cfg.saveResults) {
+                runPipelined(cfg, runner, stats);
+            } else {
+                runner.run(0, cfg.numSimulations, stats, null);
+            }
+            dumpPaths(cfg, runner.samplePool());
+            return paths;
+        }
+    }
+
+    private static PathStats runOnProcesses(Config cfg, MonteCarloStats stats, Metrics metrics) throws Exception {
         System.out.println("Running Monte Carlo with " + String.format("%,d", cfg.numSimulations) +
-                " simulations on virtual threads... (batch=" + cfg.batchSize + ")");
-        List<Long> finalBalances = Collections.synchronizedList(new ArrayList<>());
-        List<Double> drawdowns = Collections.synchronizedList(new ArrayList<>());
-        List<Map<String, Object>> allResults = Collections.synchronizedList(new ArrayList<>());
-
-        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            CompletionService<Map<String, Object>> cs = new ExecutorCompletionService<>(executor);
-            int submitted = 0;
-            int counter = 0;
+                " simulations on " + cfg.numProcesses + " worker processes... (batch=" + cfg.batchSize + ")");
+        PathStats paths = cfg.pathStats ? new PathStats(cfg.numTrades) : null;
+        Cluster.run(cfg, stats, paths, metrics);
+        dumpPaths(cfg, SamplePool.create(cfg));
+        return paths;
+    }
+
+    static int sampleSize(Config cfg) {
+        return cfg.saveTradeSamples ? cfg.numSampleTrades : 0;
+    }
+
+    /**
+     * Runs the simulation batch by batch and hands every finished batch to a {@link ResultPipeline},
+     * whose writer thread appends it to the results file while the workers run the next one.
+     */
+    private static void runPipelined(Config cfg, MonteCarloRunner runner, MonteCarloStats stats) throws Exception {
+        Path path = ResultsFile.defaultPath(cfg);
+        ResultPipeline pipeline = ResultPipeline.toFile(path, cfg);
+        try (pipeline) {
             for (int start = 0; start < cfg.numSimulations; start += cfg.batchSize) {
-                int size = Math.min(cfg.batchSize, cfg.numSimulations - start);
-                // submit batch
-                for (int i = 0; i < size; i++) {
-                    long seed = new Random().nextInt(1_000_000);
-                    Config configCopy = cfg.copyWithSeed(seed);
-                    cs.submit(() -> runSingleSimulation(configCopy));
-                    submitted++;
-                }
-                Instant startTime = Instant.now();
-                // collect batch results
-                for (int i = 0; i < size; i++) {
-                    Future<Map<String, Object>> f = cs.take();
-                    Map<String, Object> res = f.get();
-                    allResults.add(res);
-                    finalBalances.add((Long) res.get("final_balance"));
-                    drawdowns.add((Double) res.get("max_drawdown"));
-                    counter++;
-                    if (counter % cfg.batchSize == 0 || counter == cfg.numSimulations) {
-                        System.out.println("Finished " + String.format("%,d", counter) + " of "
-                                + String.format("%,d", cfg.numSimulations) + " in " + String.format("%,d seconds",
-                                        (Instant.now().getEpochSecond() - startTime.getEpochSecond())));
-                    }
-                }
+                int count = Math.min(cfg.batchSize, cfg.numSimulations - start);
+                ResultColumns columns = new ResultColumns(start, count, sampleSize(cfg));
+                runner.run(start, start + count, stats, columns);
+                pipeline.submit(columns);
             }
         }
+        SimulationSaver.report(pipeline, path);
+    }
 
-        SimulationSaver.saveSimulationResults(cfg, allResults, "montecarlo_results.mpack");
+    /**
+     * Runs the simulation batch by batch, committing each batch to the checkpoint on the
+     * {@link ResultPipeline}'s writer thread while the next batch runs. At most a few batches of
+     * results are in memory at a time; the final results file is assembled from the segments.
+     * Returns the path statistics of every batch, restored and run, or null unless pathStats is set.
+     */
+    private static PathStats runWithCheckpoints(Config cfg, MonteCarloRunner runner, MonteCarloStats stats)
+            throws Exception {
+        Checkpoint checkpoint = Checkpoint.open(cfg);
+        PathStats paths = cfg.pathStats ? new PathStats(cfg.numTrades) : null;
+        int restored = checkpoint.completedSimulations();
+        if (restored > 0) {
+            System.out.println("Resuming from " + cfg.checkpointDir + ": " + String.format("%,d", restored)
+                    + " simulations already done");
+            checkpoint.loadCompleted(stats, paths);
+            runner.skip(restored);
+        }
+        try (ResultPipeline pipeline = new ResultPipeline(
+                columns -> checkpoint.commit((int) (columns.startIndex() / cfg.batchSize), columns))) {
+            for (int batch = 0; batch < checkpoint.numBatches(); batch++) {
+                if (checkpoint.isComplete(batch)) continue;
+                int start = checkpoint.batchStart(batch);
+                ResultColumns columns = new ResultColumns(start, checkpoint.batchSize(batch), sampleSize(cfg));
+                runner.run(start, start + columns.count(), stats, columns);
+                if (paths != null) {
+                    // written before the batch is submitted, so it exists once the batch is recorded
+                    PathStats part = runner.takePathStats();
+                    checkpoint.writePaths(batch, part);
+                    paths.merge(part);
+                }
+                pipeline.submit(columns);
+            }
+        }
+        if (cfg.saveResults) {
+            Path path = ResultsFile.defaultPath(cfg);
+            checkpoint.mergeInto(path);
+            System.out.println("Saved " + cfg.numSimulations + " simulation results to: " + path);
+        }
+        return paths;
+    }
 
-        // Summary
-        long hits = finalBalances.stream().filter(b -> b >= cfg.targetBalance).count();
-        long bankrupt = finalBalances.stream().filter(b -> b == 0).count();
-        double avg = finalBalances.stream().mapToLong(Long::longValue).average().orElse(0);
-        long median = finalBalances.stream().sorted().skip(finalBalances.size() / 2).findFirst().orElse(0L);
+    /**
+     * Runs batch after batch until the {@link StoppingRule} is met, numSimulations runs are done
+     * or maxSeconds have passed. Saved results stream through a {@link ResultPipeline} into a
+     * part file, which is copied behind a header with the number of runs actually done as the
+     * file's numSimulations at the end.
+     */
+    private static void runAdaptive(Config cfg, MonteCarloRunner runner, MonteCarloStats stats) throws Exception {
+        StoppingRule rule = new StoppingRule(cfg);
+        Path part = Path.of("montecarlo_results.tsim.part");
+        long start = System.nanoTime();
+        int done = 0;
+        String reason;
+        try (ResultPipeline pipeline = cfg.saveResults ? ResultPipeline.toFile(part, cfg) : null) {
+            while (true) {
+                int count = Math.min(cfg.batchSize, cfg.numSimulations - done);
+                ResultColumns columns = cfg.saveResults ? new ResultColumns(done, count, sampleSize(cfg)) : null;
+                runner.run(done, done + count, stats, columns);
+                if (columns != null) pipeline.submit(columns);
+                done += count;
+                System.out.println(rule.progress(stats));
+                if (rule.met(stats)) {
+                    reason = "all tolerances met";
+                    break;
+                }
+                if (done >= cfg.numSimulations) {
+                    reason = "numSimulations budget spent";
+                    break;
+                }
+                if (cfg.maxSeconds > 0 && (System.nanoTime() - start) / 1e9 >= cfg.maxSeconds) {
+                    reason = "maxSeconds budget spent";
+                    break;
+                }
+            }
+        }
+        System.out.printf("Adaptive run stopped after %,d of at most %,d simulations (%s)%n", done,
+                cfg.numSimulations, reason);
+        if (cfg.saveResults) {
+            Config saved = cfg.copyWithSeed(cfg.seed);
+            saved.numSimulations = done;
+            SimulationSaver.saveSimulationResults(saved, part, ResultsFile.defaultPath(cfg));
+            Files.delete(part);
+        }
+    }
 
+    static void printSummary(Config cfg, MonteCarloStats stats) {
         System.out.printf("%n%s%n", dashbar);
         System.out.printf("Trade Parameters%n");
         System.out.printf("Min Risk Reward  : %d%n", (int) cfg.minRr);
         System.out.printf("Max Risk Reward  : %d%n", (int) cfg.maxRr);
         System.out.printf("Min Win Rate     : %.2f%%%n", 100 * cfg.winRateLow);
         System.out.printf("Max Win Rate     : %.2f%%%n%n", 100 * cfg.winRateHigh);
-        System.out.println("Monte Carlo Simulation Results (" + String.format("%,d", cfg.numSimulations) + " runs):");
+        System.out.println("Monte Carlo Simulation Results (" + String.format("%,d", stats.count()) + " runs):");
         System.out.println("Target balance: $" + String.format("%,d", cfg.targetBalance));
-        System.out.println("Success rate: " + hits + "/" + cfg.numSimulations);
-        System.out.println("Bankruptcy rate: " + bankrupt + "/" + cfg.numSimulations);
-        System.out.println("Median final balance: $" + median);
-        System.out.println("Average final balance: $" + (long) avg);
+        Estimates e = stats.estimates();
+        // a rate with no events (or only events) gets the rule-of-three 3/n, as in the adaptive progress lines
+        System.out.printf("Success rate: %d/%d (%.3f%% +/- %.3f%%, 95%% CI)%n", stats.hits(), stats.count(),
+                100 * e.estimate(Estimates.SUCCESS),
+                100 * StoppingRule.rateHalfWidth(stats, Estimates.SUCCESS, stats.hits()));
+        System.out.printf("Bankruptcy rate: %d/%d (%.3f%% +/- %.3f%%, 95%% CI)%n", stats.bankrupt(), stats.count(),
+                100 * e.estimate(Estimates.BANKRUPT),
+                100 * StoppingRule.rateHalfWidth(stats, Estimates.BANKRUPT, stats.bankrupt()));
+        System.out.println("Median final balance: $" + stats.medianBalance());
+        System.out.printf("Average final balance: $%d (+/- %,.0f, 95%% CI)%n", (long) stats.averageBalance(),
+                e.halfWidth(Estimates.BALANCE));
+        if (Estimates.reduced(cfg)) {
+            System.out.printf("Variance reduction: %s, %,d units; plain sampling would need %.2fx the runs"
+                            + " for the success rate, %.2fx for the average balance%n", cfg.varianceReduction,
+                    e.units(), e.efficiency(Estimates.SUCCESS), e.efficiency(Estimates.BALANCE));
+        }
+        System.out.printf("Median max drawdown: %.2f%%%n", stats.drawdownAtQuantile(0.5));
+        if (cfg.stopAtTarget || cfg.ruinBalance > 0 || cfg.stopDrawdownPct > 0) {
+            System.out.println("Stopped early: target " + stats.stopped(StopReason.TARGET) + ", ruin "
+                    + stats.stopped(StopReason.RUIN) + ", drawdown " + stats.stopped(StopReason.DRAWDOWN));
+        }
+        Histogram ttt = stats.timeToTargetHistogram();
+        if (ttt.count() > 0) {
+            System.out.println("Trades to target: median " + ttt.valueAtQuantile(0.5) + ", 10%-90% "
+                    + ttt.valueAtQuantile(0.1) + "-" + ttt.valueAtQuantile(0.9) + " (" + ttt.count() + " runs reached it)");
+        }
         System.out.printf("%s%n", dashbar);
+    }
 
-        Analyze.analyzeBalances(finalBalances);
+    public static SimulationResult runSimulation(Config cfg, long index, Simulator.Scratch scratch) {
+        return runSimulation(cfg, null, index, scratch, null, null);
+    }
+
+    /**
+     * Runs simulation index from its own stream. With antithetic sampling, an odd index is the
+     * partner of index - 1: the same stream, every draw mirrored (see {@link Rng#mirror}).
+     */
+    static SimulationResult runSimulation(Config cfg, SamplePool pool, long index, Simulator.Scratch scratch,
+                                          ResultStore columns, TradeSink sink) {
+        boolean mirrored = Estimates.antithetic(cfg) && (index & 1) != 0;
+        SplittableRandom stream = Rng.forSimulation(cfg.seed, mirrored ? index - 1 : index);
+        RandomGenerator rnd = mirrored ? Rng.mirror(stream) : stream;
+        SampleSet samples = SamplePool.sampleSet(cfg, pool, rnd, scratch.samples(), Estimates.stratum(cfg, index));
+        SimulationResult res = Simulator.simulate(cfg, samples, scratch, rnd, sink, mirrored);
+        if (columns != null) {
+            columns.set(index, res);
+            if (columns.hasSamples()) columns.setSamples(index, samples);
+        }
+        return res;
     }
 
     public static Map<String, Object> runSingleSimulation(Config cfg) {
-        List<Trade> sampleTrades = TradeGenerator.generateSampleTrades(cfg);
-        Map<String, Object> sim = Simulator.simulateTrades(cfg, sampleTrades);
+        // same stream (and sample set) as Monte Carlo simulation 0 for this seed
+        SplittableRandom rnd = Rng.forSimulation(cfg.seed, 0);
+        List<Trade> sampleTrades = SamplePool.sampleSet(cfg, SamplePool.create(cfg), rnd,
+                new SampleSet(cfg.numSampleTrades), Estimates.stratum(cfg, 0)).toTrades();
+        Map<String, Object> sim = Simulator.simulateTrades(cfg, sampleTrades, rnd);
         List<Long> bh = (List<Long>) sim.get("balance_history");
         long finalBalance = bh.get(bh.size() - 1);
         double maxDrawdown = (Double) sim.get("max_drawdown");
@@ -94,72 +261,38 @@ public class MonteCarlo {
         return r;
     }
 
+    /**
+     * Runs Monte Carlo simulation 0 and streams its trades, as they execute, to the trade log
+     * (tradeLogFormat) and, with reportTrades, to the console; no trade log is kept in memory.
+     */
     public static void runAndSummarizeSingleSimulation(Config cfg) throws Exception {
-        Map<String, Object> result = MonteCarlo.runSingleSimulation(cfg);
-        List<Map<String, Object>> tradeLog = (List<Map<String, Object>>) result.get("trade_log");
-        int numWins = tradeLog.size();
+        // same stream (and sample set) as Monte Carlo simulation 0 for this seed
+        SplittableRandom rnd = Rng.forSimulation(cfg.seed, 0);
+        SampleSet samples = SamplePool.sampleSet(cfg, SamplePool.create(cfg), rnd, new SampleSet(cfg.numSampleTrades),
+                Estimates.stratum(cfg, 0));
+        long[] numWinsHolder = new long[1];
         Map<Double, Integer> atMap = new HashMap<>();
+        TradeSink tally = (tradeNum, sample, win, rrr, riskAmount, startBalance, endBalance) -> {
+            if (win && cfg.printTradeSamples) atMap.merge(rrr, 1, Integer::sum);
+            if (startBalance < endBalance) numWinsHolder[0]++;
+        };
 
-        if (tradeLog != null && !tradeLog.isEmpty()) {
-            try (PrintWriter fileWriter = new PrintWriter("trade_log.csv")) {
-                String headerRow = "%-10s | %-8s | %-4s | %-16s | %-12s | %-12s | %-14s | %-11s%n".formatted(
-                        "trade_num", "outcome", "rrr", "actual_risk_pct", "risk_amount",
-                        "amount", "start_balance", "end_balance");
-                System.out.printf(headerRow);
-
-                // Print Summary
-                fileWriter.println("\nSUMMARY");
-                fileWriter.println("=======");
-
-                fileWriter.printf("Min RR, %d%n", (int) cfg.minRr);
-                fileWriter.printf("Max RR, %d%n", (int) cfg.maxRr);
-                fileWriter.printf("Min WinRate, %.2f%%%n", 100 * cfg.winRateLow);
-                fileWriter.printf("Max WinRate, %.2f%%%n", 100 * cfg.winRateHigh);
-                fileWriter.printf("Final Balance,\"%,d\"%n", (long) result.get("final_balance"));
-
-                fileWriter.printf("=======%n%n");
-
-                fileWriter
-                        .println("trade_num,outcome,rrr,actual_risk_pct,risk_amount,amount,start_balance,end_balance");
-                String print_pattern = "%-10d | %-8s | %-4.1f | %-16.2f | %-12s | %-12s | %-14s | %-11s%n";
-                String csv_pattern = "%-10d , %-8s , %-4.1f , %-16.2f , %-12d , %-12d , %-14d , %-11d%n";
-                for (Map<String, Object> trade : tradeLog) {
-                    int tradeNum = (int) trade.get("trade_num");
-                    String outcome = (String) trade.get("outcome");
-                    double rrr = (double) trade.get("rrr");
-                    if (outcome.equals("Win"))
-                        atMap.put(rrr, atMap.getOrDefault(rrr, 0) + 1);
-                    double actualRiskPct = ((Number) trade.get("actual_risk_pct")).doubleValue();
-                    double riskAmount = ((Number) trade.get("risk_amount")).doubleValue();
-                    double amount = ((Number) trade.get("amount")).doubleValue();
-                    long startBalance = ((Number) trade.get("start_balance")).longValue();
-                    long endBalance = ((Number) trade.get("end_balance")).longValue();
-
-                    if (startBalance >= endBalance) {
-                        numWins--;
-                    }
-                    String row = print_pattern.formatted(tradeNum,
-                            outcome,
-                            rrr,
-                            actualRiskPct,
-                            formatWithUnderscores((long) riskAmount),
-                            formatWithUnderscores((long) amount),
-                            formatWithUnderscores(startBalance),
-                            formatWithUnderscores(endBalance));
-                    System.out.printf(row);
-
-                    fileWriter.printf(Locale.US, csv_pattern, tradeNum,
-                            outcome,
-                            rrr,
-                            actualRiskPct,
-                            (long) riskAmount,
-                            (long) amount,
-                            startBalance,
-                            endBalance);
-                }
+        SimulationResult result;
+        try (TradeSink log = openTradeLog(cfg);
+             TradeSink console = cfg.reportTrades ? consoleTable() : TradeSink.NULL) {
+            result = Simulator.simulate(cfg, samples, new Simulator.Scratch(cfg), rnd, TradeSink.tee(log, console, tally));
+            if (log instanceof TextTradeSink csv) {
+                csv.line("");
+                csv.line(String.format("Final Balance,\"%,d\"", result.finalBalance()));
             }
-        } else {
+        }
+        long numWins = numWinsHolder[0];
+        if (result.tradesExecuted() == 0) {
             System.out.println("No trades found.");
+        } else if (result.stopReason() == StopReason.BANKRUPT) {
+            System.out.println("Account depleted after " + result.tradesExecuted() + " trades");
+        } else if (result.stopReason() != StopReason.COMPLETED) {
+            System.out.println("Stopped after " + result.tradesExecuted() + " trades: " + result.stopReason());
         }
 
         if (cfg.printTradeSamples) {
@@ -202,14 +335,62 @@ public class MonteCarlo {
         System.out.printf("Max Risk Reward  : %d%n", (int) cfg.maxRr);
         System.out.printf("Min Win Rate     : %.2f%%%n", 100 * cfg.winRateLow);
         System.out.printf("Max Win Rate     : %.2f%%%n", 100 * cfg.winRateHigh);
-        System.out.printf("Max Drawdown     : %.2f%%%n", result.get("max_drawdown"));
+        System.out.printf("Max Drawdown     : %.2f%%%n", result.maxDrawdown());
         System.out.printf("Starting Balance : %,d%n", cfg.startingBalance);
-        System.out.printf("Final Balance    : %,d%n", result.get("final_balance"));
-        System.out.printf("Max Drawdown     : %.2f%%%n", result.get("max_drawdown"));
+        System.out.printf("Final Balance    : %,d%n", result.finalBalance());
+        System.out.printf("Max Drawdown     : %.2f%%%n", result.maxDrawdown());
         System.out.printf("%s%n", dashbar);
     }
 
-    private static String formatWithUnderscores(long number) {
-        return String.format(Locale.US, "%,d", number);
+    /** The single run's trade log: trade_log.csv (with a summary around the rows), trade_log.bin or nothing. */
+    private static TradeSink openTradeLog(Config cfg) throws IOException {
+        if (!"csv".equals(cfg.tradeLogFormat)) return TradeSink.open(cfg.tradeLogFormat, "trade_log");
+        TextTradeSink csv = TextTradeSink.csv(Path.of("trade_log.csv"));
+        csv.line("");
+        csv.line("SUMMARY");
+        csv.line("=======");
+        csv.line(String.format("Min RR, %d", (int) cfg.minRr));
+        csv.line(String.format("Max RR, %d", (int) cfg.maxRr));
+        csv.line(String.format("Min WinRate, %.2f%%", 100 * cfg.winRateLow));
+        csv.line(String.format("Max WinRate, %.2f%%", 100 * cfg.winRateHigh));
+        csv.line("=======");
+        csv.line("");
+        csv.header();
+        return csv;
+    }
+
+    private static TradeSink consoleTable() throws IOException {
+        TextTradeSink table = new TextTradeSink(new BufferedWriter(new OutputStreamWriter(System.out)), true);
+        table.header();
+        return table;
+    }
+
+    // rejects an unknown tradeLogFormat and dumpPaths indices outside [0, numSimulations) before the run starts
+    private static void checkDumpPaths(Config cfg) {
+        TradeSink.extension(cfg.tradeLogFormat);
+        if (cfg.dumpPaths == null) return;
+        for (long index : cfg.dumpPaths) {
+            if (index < 0 || index >= cfg.numSimulations) {
+                throw new IllegalArgumentException("dumpPaths index " + index + " is not a simulation of this run");
+            }
+        }
+    }
+
+    /**
+     * Writes the trades of each simulation listed in dumpPaths to montecarlo_path_<index> in
+     * tradeLogFormat. A run depends only on (seed, index), so replaying it reproduces it exactly.
+     */
+    static void dumpPaths(Config cfg, SamplePool pool) throws IOException {
+        if (cfg.dumpPaths == null || "none".equals(cfg.tradeLogFormat)) return;
+        Simulator.Scratch scratch = new Simulator.Scratch(cfg);
+        for (long index : cfg.dumpPaths) {
+            String base = "montecarlo_path_" + index;
+            SimulationResult r;
+            try (TradeSink sink = TradeSink.open(cfg.tradeLogFormat, base)) {
+                r = runSimulation(cfg, pool, index, scratch, null, sink);
+            }
+            System.out.printf("Wrote the %,d trades of simulation %d (final balance $%,d) to %s%n", r.tradesExecuted(),
+                    index, r.finalBalance(), base + TradeSink.extension(cfg.tradeLogFormat));
+        }
     }
 }
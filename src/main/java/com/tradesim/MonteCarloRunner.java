@@ -0,0 +1,283 @@
+package com.tradesim;
+
+import com.tradesim.model.SimulationResult;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs ranges of simulation indices on the configured scheduler: a fixed pool of platform
+ * workers claiming chunks from a shared cursor (default), or one virtual thread per simulation.
+ * The pool lives as long as the runner, so consecutive ranges reuse warm threads. Every finished
+ * chunk is published to the run's {@link Metrics}.
+ */
+public class MonteCarloRunner implements AutoCloseable {
+    private static final int MAX_CHUNK = 1024;
+    static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_SIMULATOR = "com.tradesim.VectorSimulator";
+
+    private final Config cfg;
+    private final int workers;
+    private final ExecutorService pool;
+    private final SamplePool samplePool;
+    private PathStats pathStats;
+    private final Metrics metrics;
+    private final AtomicLong completed = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    public MonteCarloRunner(Config cfg, Metrics metrics) {
+        checkEngine(cfg);
+        this.cfg = cfg;
+        this.metrics = metrics;
+        this.workers = workerCount(cfg);
+        this.pool = cfg.virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(workers);
+        this.samplePool = SamplePool.create(cfg);
+        this.pathStats = cfg.pathStats ? new PathStats(cfg.numTrades) : null;
+    }
+
+    static void checkEngine(Config cfg) {
+        Estimates.check(cfg);
+        if (cfg.pathStats && cfg.virtualThreads) {
+            throw new IllegalStateException("pathStats needs the worker pool; unset virtualThreads");
+        }
+        if (Estimates.reduced(cfg) && cfg.virtualThreads) {
+            throw new IllegalStateException("varianceReduction needs the worker pool; unset virtualThreads");
+        }
+        if (cfg.vectorized) {
+            if (cfg.virtualThreads) {
+                throw new IllegalStateException("vectorized runs need the worker pool; unset virtualThreads");
+            }
+            if (!vectorModuleAvailable()) {
+                throw new IllegalStateException("vectorized runs need the JVM option --add-modules " + VECTOR_MODULE);
+            }
+            vectorSimulatorConstructor();
+        }
+    }
+
+    // must not touch VectorSimulator: loading it without the module fails
+    static boolean vectorModuleAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    // VectorSimulator is compiled only by the vector profile, so it is looked up by name
+    private static Constructor<? extends LaneSimulator> vectorSimulatorConstructor() {
+        try {
+            return Class.forName(VECTOR_SIMULATOR).asSubclass(LaneSimulator.class)
+                    .getDeclaredConstructor(Config.class, SamplePool.class);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("vectorized runs need a build with the vector profile (mvn -Pvector package)");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static LaneSimulator vectorSimulator(Config cfg, SamplePool samplePool) {
+        try {
+            return vectorSimulatorConstructor().newInstance(cfg, samplePool);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static int workerCount(Config cfg) {
+        return cfg.numMonteCarloWorkers > 0 ? cfg.numMonteCarloWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    public String describe() {
+        if (cfg.virtualThreads) return "virtual threads";
+        return workers + (vectorEngine(cfg) ? " vectorized" : "") + " worker threads";
+    }
+
+    // path statistics need every trade, and variance reduction mirrored or stratified draws,
+    // which only the scalar kernel has
+    static boolean vectorEngine(Config cfg) {
+        return cfg.vectorized && !cfg.pathStats && !Estimates.reduced(cfg);
+    }
+
+    /** Per-trade-index distributions of every simulation run so far, or null unless pathStats is set. */
+    public PathStats pathStats() {
+        return pathStats;
+    }
+
+    /** Hands over the path statistics gathered so far and starts a fresh accumulator. */
+    PathStats takePathStats() {
+        PathStats taken = pathStats;
+        if (taken != null) pathStats = new PathStats(cfg.numTrades);
+        return taken;
+    }
+
+    /** The shared sample sets simulations draw from (null when each draws a fresh set). */
+    public SamplePool samplePool() {
+        return samplePool;
+    }
+
+    /** Runs simulations [from, to), folding them into stats and, when non-null, storing them in columns. */
+    public void run(int from, int to, MonteCarloStats stats, ResultStore columns) throws Exception {
+        if (cfg.virtualThreads) {
+            runOnVirtualThreads(from, to, stats, columns);
+        } else {
+            runOnWorkerPool(from, to, stats, columns);
+        }
+    }
+
+    // small enough that workers finish together, large enough that claiming a chunk is noise;
+    // even, so an antithetic pair stays with one worker
+    private int chunkSize(int size) {
+        return Math.max(2, Math.min(MAX_CHUNK, size / (workers * 8)) & ~1);
+    }
+
+    /**
+     * Per-thread state for the worker pool: scratch buffers for the kernel (or the lane arrays
+     * of the vector engine) and local accumulators merged at the end. Per-run results go
+     * straight into the shared columns (which may be null).
+     */
+    static final class Worker {
+        final Config cfg;
+        final SamplePool samplePool;
+        final Simulator.Scratch scratch;
+        final LaneSimulator vector;
+        final MonteCarloStats stats;
+        final PathStats paths;
+        final ResultStore columns;
+        long trades;
+
+        Worker(Config cfg, SamplePool samplePool, ResultStore columns) {
+            this.cfg = cfg;
+            this.samplePool = samplePool;
+            this.scratch = new Simulator.Scratch(cfg);
+            this.vector = vectorEngine(cfg) ? vectorSimulator(cfg, samplePool) : null;
+            this.stats = new MonteCarloStats(cfg);
+            this.paths = cfg.pathStats ? new PathStats(cfg.numTrades) : null;
+            this.columns = columns;
+        }
+
+        void run(int from, int to) {
+            if (vector != null) {
+                runVectorized(from, to);
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                SimulationResult r = MonteCarlo.runSimulation(cfg, samplePool, i, scratch, columns, paths);
+                if (paths != null) paths.finish(r.tradesExecuted());
+                trades += r.tradesExecuted();
+                stats.add(i, r);
+            }
+        }
+
+        private void runVectorized(int from, int to) {
+            for (int start = from; start < to; start += vector.group()) {
+                int count = Math.min(vector.group(), to - start);
+                vector.simulate(start, count);
+                for (int l = 0; l < count; l++) {
+                    trades += vector.executed[l];
+                    stats.add(start + l, vector.balance[l], vector.maxDrawdown[l], vector.targetTrade[l], vector.stop[l]);
+                    if (columns != null) {
+                        columns.set(start + l, vector.balance[l], vector.maxDrawdown[l], vector.executed[l],
+                                vector.targetTrade[l], vector.stop[l]);
+                        if (columns.hasSamples()) columns.setSamples(start + l, vector.samples(l));
+                    }
+                }
+            }
+        }
+    }
+
+    private void runOnWorkerPool(int from, int to, MonteCarloStats stats, ResultStore columns) throws Exception {
+        int chunk = chunkSize(to - from);
+        AtomicInteger nextIndex = new AtomicInteger(from);
+        List<Future<Worker>> futures = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            futures.add(pool.submit(() -> {
+                Worker worker = new Worker(cfg, samplePool, columns);
+                int start;
+                while ((start = nextIndex.getAndAdd(chunk)) < to) {
+                    int end = Math.min(start + chunk, to);
+                    runChunk(worker, start, end);
+                    advance(end - start);
+                }
+                return worker;
+            }));
+        }
+        for (Future<Worker> f : futures) {
+            Worker worker = f.get();
+            stats.merge(worker.stats);
+            if (pathStats != null) pathStats.merge(worker.paths);
+        }
+    }
+
+    private void runChunk(Worker worker, int start, int end) {
+        Metrics.ChunkEvent event = new Metrics.ChunkEvent();
+        event.begin();
+        long t0 = System.nanoTime();
+        long trades = worker.trades, hits = worker.stats.hits(), bankrupt = worker.stats.bankrupt();
+        worker.run(start, end);
+        metrics.chunk(end - start, worker.trades - trades, worker.stats.bankrupt() - bankrupt,
+                worker.stats.hits() - hits, System.nanoTime() - t0);
+        if (event.shouldCommit()) {
+            event.firstIndex = start;
+            event.simulations = end - start;
+            event.trades = worker.trades - trades;
+            event.commit();
+        }
+    }
+
+    private void runOnVirtualThreads(int from, int to, MonteCarloStats stats, ResultStore columns) throws Exception {
+        CompletionService<SimulationResult> cs = new ExecutorCompletionService<>(pool);
+        for (int start = from; start < to; start += cfg.batchSize) {
+            int size = Math.min(cfg.batchSize, to - start);
+            Metrics.ChunkEvent event = new Metrics.ChunkEvent();
+            event.begin();
+            long t0 = System.nanoTime();
+            long trades = 0, hits = 0, bankrupt = 0;
+            // submit batch
+            for (int i = 0; i < size; i++) {
+                int index = start + i;
+                cs.submit(() -> MonteCarlo.runSimulation(cfg, samplePool, index, new Simulator.Scratch(cfg), columns,
+                        null));
+            }
+            // collect batch results; only this thread touches stats
+            for (int i = 0; i < size; i++) {
+                SimulationResult r = cs.take().get();
+                stats.add(r);
+                trades += r.tradesExecuted();
+                if (r.finalBalance() >= cfg.targetBalance) hits++;
+                if (r.finalBalance() == 0) bankrupt++;
+                advance(1);
+            }
+            metrics.chunk(size, trades, bankrupt, hits, System.nanoTime() - t0);
+            if (event.shouldCommit()) {
+                event.firstIndex = start;
+                event.simulations = size;
+                event.trades = trades;
+                event.commit();
+            }
+        }
+    }
+
+    private void advance(int n) {
+        long done = completed.addAndGet(n);
+        if (done / cfg.batchSize != (done - n) / cfg.batchSize || done == cfg.numSimulations) {
+            System.out.println("Finished " + String.format("%,d", done) + " of "
+                    + String.format("%,d", cfg.numSimulations) + " in "
+                    + String.format("%,.1f seconds", (System.nanoTime() - startNanos) / 1e9)
+                    + String.format(" (%,.0f sims/s)", metrics.simulations() / metrics.elapsedSeconds()));
+        }
+    }
+
+    /** Counts simulations restored from elsewhere (e.g. a checkpoint) towards progress. */
+    public void skip(int n) {
+        completed.addAndGet(n);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,198 @@
+package com.tradesim;
+
+import com.tradesim.model.SimulationResult;
+import com.tradesim.model.StopReason;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Online accumulator for Monte Carlo results. Memory is constant in the number of simulations;
+ * accumulators built on separate threads are combined with {@link #merge(MonteCarloStats)}.
+ */
+public class MonteCarloStats {
+    // drawdowns are percentages, kept in the histogram as hundredths of a percent
+    static final double DRAWDOWN_SCALE = 100.0;
+
+    final long targetBalance;
+    long count;
+    long hits;
+    long bankrupt;
+    long sumBalance;
+    double sumDrawdown;
+    Histogram balances = new Histogram();
+    Histogram drawdowns = new Histogram();
+    // trades until the target was first reached, for runs that reached it
+    Histogram timeToTarget = new Histogram();
+    final long[] stops = new long[StopReason.values().length];
+    Estimates estimates;
+
+    /** Plain sampling; runs added without an index count as independent. */
+    public MonteCarloStats(long targetBalance) {
+        this(targetBalance, new Estimates());
+    }
+
+    /** Standard errors follow cfg's varianceReduction; add runs with their simulation index. */
+    public MonteCarloStats(Config cfg) {
+        this(cfg.targetBalance, new Estimates(cfg));
+    }
+
+    private MonteCarloStats(long targetBalance, Estimates estimates) {
+        this.targetBalance = targetBalance;
+        this.estimates = estimates;
+    }
+
+    /** An empty accumulator with the same target and variance reduction, to merge into this one. */
+    MonteCarloStats emptyCopy() {
+        return new MonteCarloStats(targetBalance, estimates.emptyCopy());
+    }
+
+    public void add(SimulationResult r) {
+        add(-1, r);
+    }
+
+    public void add(long index, SimulationResult r) {
+        add(index, r.finalBalance(), r.maxDrawdown(), r.targetTrade(), r.stopReason());
+    }
+
+    public void add(long finalBalance, double maxDrawdown, int targetTrade, StopReason stop) {
+        add(-1, finalBalance, maxDrawdown, targetTrade, stop);
+    }
+
+    public void add(long index, long finalBalance, double maxDrawdown, int targetTrade, StopReason stop) {
+        add(index, finalBalance, maxDrawdown);
+        if (targetTrade > 0) timeToTarget.record(targetTrade);
+        stops[stop.ordinal()]++;
+    }
+
+    void add(long finalBalance, double maxDrawdown) {
+        add(-1, finalBalance, maxDrawdown);
+    }
+
+    void add(long index, long finalBalance, double maxDrawdown) {
+        count++;
+        if (finalBalance >= targetBalance) hits++;
+        if (finalBalance == 0) bankrupt++;
+        sumBalance += finalBalance;
+        sumDrawdown += maxDrawdown;
+        balances.record(finalBalance);
+        drawdowns.record(Math.round(maxDrawdown * DRAWDOWN_SCALE));
+        estimates.add(index, finalBalance, targetBalance);
+    }
+
+    public void merge(MonteCarloStats other) {
+        count += other.count;
+        hits += other.hits;
+        bankrupt += other.bankrupt;
+        sumBalance += other.sumBalance;
+        sumDrawdown += other.sumDrawdown;
+        balances.merge(other.balances);
+        drawdowns.merge(other.drawdowns);
+        timeToTarget.merge(other.timeToTarget);
+        for (int i = 0; i < stops.length; i++) stops[i] += other.stops[i];
+        estimates.merge(other.estimates);
+    }
+
+    /** Writes the accumulator for another process to {@link #readFrom} and merge. */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(targetBalance);
+        out.writeLong(count);
+        out.writeLong(hits);
+        out.writeLong(bankrupt);
+        out.writeLong(sumBalance);
+        out.writeDouble(sumDrawdown);
+        balances.writeTo(out);
+        drawdowns.writeTo(out);
+        timeToTarget.writeTo(out);
+        out.writeByte(stops.length);
+        for (long s : stops) out.writeLong(s);
+        estimates.writeTo(out);
+    }
+
+    public static MonteCarloStats readFrom(DataInput in) throws IOException {
+        MonteCarloStats s = new MonteCarloStats(in.readLong());
+        s.count = in.readLong();
+        s.hits = in.readLong();
+        s.bankrupt = in.readLong();
+        s.sumBalance = in.readLong();
+        s.sumDrawdown = in.readDouble();
+        s.balances = Histogram.readFrom(in);
+        s.drawdowns = Histogram.readFrom(in);
+        s.timeToTarget = Histogram.readFrom(in);
+        int n = in.readByte();
+        for (int i = 0; i < n; i++) s.stops[i] = in.readLong();
+        s.estimates = Estimates.readFrom(in);
+        return s;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long bankrupt() {
+        return bankrupt;
+    }
+
+    public double averageBalance() {
+        return count == 0 ? 0 : (double) sumBalance / count;
+    }
+
+    public long minBalance() {
+        return balances.min();
+    }
+
+    public long maxBalance() {
+        return balances.max();
+    }
+
+    public long medianBalance() {
+        return balances.valueAtRank(count / 2);
+    }
+
+    public long balanceAtQuantile(double q) {
+        return balances.valueAtQuantile(q);
+    }
+
+    public double averageDrawdown() {
+        return count == 0 ? 0 : sumDrawdown / count;
+    }
+
+    public double maxDrawdown() {
+        return drawdowns.max() / DRAWDOWN_SCALE;
+    }
+
+    public double drawdownAtQuantile(double q) {
+        return drawdowns.valueAtQuantile(q) / DRAWDOWN_SCALE;
+    }
+
+    public Histogram balanceHistogram() {
+        return balances;
+    }
+
+    /** Runs that reached the target at some trade, even if they later fell back below it. */
+    public long reachedTarget() {
+        return timeToTarget.count();
+    }
+
+    public Histogram timeToTargetHistogram() {
+        return timeToTarget;
+    }
+
+    public long stopped(StopReason reason) {
+        return stops[reason.ordinal()];
+    }
+
+    /** Standard errors and confidence intervals of the success rate, bankruptcy rate and mean balance. */
+    public Estimates estimates() {
+        return estimates;
+    }
+
+    public Histogram drawdownHistogram() {
+        return drawdowns;
+    }
+}
@@ -0,0 +1,120 @@
+package com.tradesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Balance and drawdown distributions at every trade index across simulations, for the quantile
+ * bands of the equity curve. Each index keeps a coarse {@link Histogram} of the balance after
+ * that trade and of the drawdown from the running peak, so memory is O(numTrades x buckets)
+ * whatever the number of simulations. A run that stops early holds its last balance and
+ * drawdown for the remaining indices. Fed as the kernel's {@link TradeSink}; accumulators of
+ * separate workers are combined with {@link #merge(PathStats)}.
+ */
+public class PathStats implements TradeSink {
+    // relative error of a band value is bounded by 2^-PRECISION_BITS
+    static final int PRECISION_BITS = 5;
+    static final double[] BANDS = {0.05, 0.25, 0.5, 0.75, 0.95};
+
+    final Histogram[] balances;
+    final Histogram[] drawdowns;
+    private long peak;
+    private long balance;
+    private long drawdown;
+
+    public PathStats(int numTrades) {
+        this(new Histogram[numTrades], new Histogram[numTrades]);
+        for (int t = 0; t < numTrades; t++) {
+            balances[t] = new Histogram(PRECISION_BITS);
+            drawdowns[t] = new Histogram(PRECISION_BITS);
+        }
+    }
+
+    private PathStats(Histogram[] balances, Histogram[] drawdowns) {
+        this.balances = balances;
+        this.drawdowns = drawdowns;
+    }
+
+    @Override
+    public void trade(int tradeNum, int sample, boolean win, double rrr, long riskAmount, long startBalance,
+                      long endBalance) {
+        if (tradeNum == 1) peak = startBalance;
+        if (endBalance > peak) peak = endBalance;
+        balance = endBalance;
+        drawdown = peak == 0 ? 0 : Math.round((double) (peak - endBalance) / peak * 100.0 * MonteCarloStats.DRAWDOWN_SCALE);
+        balances[tradeNum - 1].record(balance);
+        drawdowns[tradeNum - 1].record(drawdown);
+    }
+
+    /** Ends a run of executed trades, carrying its last state through the indices it did not reach. */
+    public void finish(int executed) {
+        for (int t = executed; t < balances.length; t++) {
+            balances[t].record(balance);
+            drawdowns[t].record(drawdown);
+        }
+    }
+
+    public void merge(PathStats other) {
+        for (int t = 0; t < balances.length; t++) {
+            balances[t].merge(other.balances[t]);
+            drawdowns[t].merge(other.drawdowns[t]);
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(balances.length);
+        for (int t = 0; t < balances.length; t++) {
+            balances[t].writeTo(out);
+            drawdowns[t].writeTo(out);
+        }
+    }
+
+    public static PathStats readFrom(DataInput in) throws IOException {
+        int numTrades = in.readInt();
+        Histogram[] balances = new Histogram[numTrades];
+        Histogram[] drawdowns = new Histogram[numTrades];
+        for (int t = 0; t < numTrades; t++) {
+            balances[t] = Histogram.readFrom(in);
+            drawdowns[t] = Histogram.readFrom(in);
+        }
+        return new PathStats(balances, drawdowns);
+    }
+
+    public int numTrades() {
+        return balances.length;
+    }
+
+    public long count() {
+        return balances.length == 0 ? 0 : balances[0].count();
+    }
+
+    /** Balance at quantile q after trade tradeNum (1-based). */
+    public long balanceAtQuantile(int tradeNum, double q) {
+        return balances[tradeNum - 1].valueAtQuantile(q);
+    }
+
+    /** Drawdown from the running peak, in percent, at quantile q after trade tradeNum (1-based). */
+    public double drawdownAtQuantile(int tradeNum, double q) {
+        return drawdowns[tradeNum - 1].valueAtQuantile(q) / MonteCarloStats.DRAWDOWN_SCALE;
+    }
+
+    /** Writes one row per trade index with the balance and drawdown bands. */
+    public void write(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            StringBuilder header = new StringBuilder("trade");
+            for (double q : BANDS) header.append(",balance_p").append(Math.round(q * 100));
+            for (double q : BANDS) header.append(",drawdown_p").append(Math.round(q * 100));
+            out.println(header);
+            for (int t = 1; t <= balances.length; t++) {
+                out.print(t);
+                for (double q : BANDS) out.print("," + balanceAtQuantile(t, q));
+                for (double q : BANDS) out.print("," + drawdownAtQuantile(t, q));
+                out.println();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.tradesim;
+
+import java.util.Arrays;
+
+/**
+ * Quantiles and bucketed counts, exact over a {@code long[]} or approximate over a
+ * {@link Histogram} (the mergeable sketch the streaming statistics already keep). Quantile q
+ * means the value at sorted[(int) (n * q)], the indexing Analyze has always used.
+ */
+public final class Percentiles {
+    // above this many quantiles one full sort beats repeated partitioning
+    private static final int SORT_THRESHOLD = 16;
+
+    private Percentiles() {
+    }
+
+    /**
+     * Exact quantiles of values, which is reordered: a quickselect that partitions once and
+     * recurses only into the sides holding wanted ranks, so a few quantiles cost O(n).
+     */
+    public static long[] exact(long[] values, double... quantiles) {
+        long[] out = new long[quantiles.length];
+        int n = values.length;
+        if (n == 0) return out;
+        int[] ranks = new int[quantiles.length];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = rank(n, quantiles[i]);
+        }
+        if (ranks.length > SORT_THRESHOLD) {
+            Arrays.parallelSort(values);
+        } else {
+            int[] sorted = ranks.clone();
+            Arrays.sort(sorted);
+            select(values, 0, n - 1, sorted, 0, sorted.length);
+        }
+        for (int i = 0; i < ranks.length; i++) {
+            out[i] = values[ranks[i]];
+        }
+        return out;
+    }
+
+    /** Approximate quantiles, within the histogram's relative precision. */
+    public static long[] approximate(Histogram histogram, double... quantiles) {
+        long[] out = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            out[i] = histogram.valueAtQuantile(quantiles[i]);
+        }
+        return out;
+    }
+
+    /** Counts of values in [from + i * size, from + (i + 1) * size) for i < buckets. */
+    public static long[] buckets(long[] values, long from, long size, int buckets) {
+        long[] counts = new long[buckets];
+        long to = from + size * buckets;
+        for (long v : values) {
+            if (v >= from && v < to) counts[(int) ((v - from) / size)]++;
+        }
+        return counts;
+    }
+
+    /** As {@link #buckets(long[], long, long, int)}, interpolated within histogram buckets. */
+    public static long[] buckets(Histogram histogram, long from, long size, int buckets) {
+        long[] counts = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            counts[i] = Math.round(histogram.countBetween(from + i * size, from + (i + 1) * size));
+        }
+        return counts;
+    }
+
+    static int rank(int n, double q) {
+        return Math.max(0, Math.min(n - 1, (int) (n * q)));
+    }
+
+    // places every rank in ranks[from, to) (sorted, all within [lo, hi]) at its sorted position
+    private static void select(long[] a, int lo, int hi, int[] ranks, int from, int to) {
+        while (from < to && lo < hi) {
+            // three-way partition around a median-of-three pivot: [lo, lt) < p, [lt, gt] == p, (gt, hi] > p
+            long p = medianOfThree(a[lo], a[lo + (hi - lo) / 2], a[hi]);
+            int lt = lo, gt = hi, i = lo;
+            while (i <= gt) {
+                long v = a[i];
+                if (v < p) {
+                    a[i++] = a[lt];
+                    a[lt++] = v;
+                } else if (v > p) {
+                    a[i] = a[gt];
+                    a[gt--] = v;
+                } else {
+                    i++;
+                }
+            }
+            int left = from;
+            while (left < to && ranks[left] < lt) left++;
+            int right = left;
+            while (right < to && ranks[right] <= gt) right++;
+            // recurse into the smaller side, loop on the other, so the stack stays O(log n)
+            if (lt - lo < hi - gt) {
+                select(a, lo, lt - 1, ranks, from, left);
+                lo = gt + 1;
+                from = right;
+            } else {
+                select(a, gt + 1, hi, ranks, right, to);
+                hi = lt - 1;
+                to = left;
+            }
+        }
+    }
+
+    private static long medianOfThree(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
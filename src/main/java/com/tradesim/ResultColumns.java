@@ -0,0 +1,94 @@
+package com.tradesim;
+
+import com.tradesim.model.StopReason;
+
+/**
+ * Per-run Monte Carlo outputs for simulation indices [startIndex, startIndex + count), one
+ * primitive array per field. Workers write disjoint indices, so no locking is needed; the pool
+ * join, and then the {@link ResultPipeline} queue, publishes the writes to the saving thread.
+ */
+public class ResultColumns implements ResultStore {
+    final long startIndex;
+    final int count;
+    final int sampleSize;
+    final long[] finalBalance;
+    final double[] maxDrawdown;
+    final int[] tradesExecuted;
+    final int[] targetTrade;
+    final byte[] stopReason;
+    // optional trade samples, sampleSize entries per run
+    final double[] sampleRrr;
+    final boolean[] sampleWin;
+
+    public ResultColumns(long startIndex, int count, int sampleSize) {
+        this.startIndex = startIndex;
+        this.count = count;
+        this.sampleSize = sampleSize;
+        this.finalBalance = new long[count];
+        this.maxDrawdown = new double[count];
+        this.tradesExecuted = new int[count];
+        this.targetTrade = new int[count];
+        this.stopReason = new byte[count];
+        this.sampleRrr = sampleSize > 0 ? new double[Math.multiplyExact(count, sampleSize)] : null;
+        this.sampleWin = sampleSize > 0 ? new boolean[count * sampleSize] : null;
+    }
+
+    public long startIndex() {
+        return startIndex;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean hasSamples() {
+        return sampleSize > 0;
+    }
+
+    public long finalBalance(int i) {
+        return finalBalance[i];
+    }
+
+    public double maxDrawdown(int i) {
+        return maxDrawdown[i];
+    }
+
+    public int tradesExecuted(int i) {
+        return tradesExecuted[i];
+    }
+
+    public int targetTrade(int i) {
+        return targetTrade[i];
+    }
+
+    public StopReason stopReason(int i) {
+        return StopReason.fromCode(stopReason[i]);
+    }
+
+    @Override
+    public void set(long index, long balance, double drawdown, int trades, int target, StopReason stop) {
+        int i = (int) (index - startIndex);
+        finalBalance[i] = balance;
+        maxDrawdown[i] = drawdown;
+        tradesExecuted[i] = trades;
+        targetTrade[i] = target;
+        stopReason[i] = stop.code();
+    }
+
+    @Override
+    public void setSamples(long index, SampleSet samples) {
+        int offset = (int) (index - startIndex) * sampleSize;
+        int n = Math.min(sampleSize, samples.size());
+        System.arraycopy(samples.rrr, 0, sampleRrr, offset, n);
+        for (int j = 0; j < n; j++) {
+            sampleWin[offset + j] = samples.win(j);
+        }
+    }
+
+    public void addTo(MonteCarloStats stats) {
+        for (int i = 0; i < count; i++) {
+            stats.add(startIndex + i, finalBalance[i], maxDrawdown[i], targetTrade[i], StopReason.fromCode(stopReason[i]));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.tradesim;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes finished batches of results on a dedicated thread, so the workers go on with the next
+ * batch while the previous one is encoded and written. Batches wait in a ring of
+ * {@link #DEPTH} slots; when the writer falls behind, {@link #submit} blocks until a slot frees
+ * up, which bounds memory at DEPTH + 2 batches (queued, being written, being computed). A failed
+ * write is rethrown by the next submit or by close; later batches are dropped.
+ */
+final class ResultPipeline implements AutoCloseable {
+    static final int DEPTH = 2;
+    private static final ResultColumns END = new ResultColumns(-1, 0, 0);
+
+    /** What the writer thread does with each batch, in submission order. */
+    interface Sink {
+        void write(ResultColumns batch) throws IOException;
+    }
+
+    private final Sink sink;
+    private final ResultsFile.Writer onClose;
+    private final BlockingQueue<ResultColumns> queue = new ArrayBlockingQueue<>(DEPTH);
+    private final Thread thread;
+    private volatile Throwable failure;
+    private volatile long writeNanos;
+    private long stallNanos;
+    private long simulations;
+    private boolean reported;
+    private boolean closed;
+
+    ResultPipeline(Sink sink) {
+        this(sink, null);
+    }
+
+    private ResultPipeline(Sink sink, ResultsFile.Writer onClose) {
+        this.sink = sink;
+        this.onClose = onClose;
+        this.thread = Thread.ofPlatform().name("result-writer").start(this::drain);
+    }
+
+    /** A pipeline appending every batch as a block of one results file, with cfg in its header. */
+    static ResultPipeline toFile(Path path, Config cfg) throws IOException {
+        ResultsFile.Writer writer = new ResultsFile.Writer(path, cfg);
+        return new ResultPipeline(batch -> {
+            Metrics.SaveEvent event = new Metrics.SaveEvent();
+            event.begin();
+            long before = writer.bytesWritten();
+            writer.writeBlock(batch);
+            if (event.shouldCommit()) {
+                event.path = path.toString();
+                event.simulations = batch.count();
+                event.bytes = writer.bytesWritten() - before;
+                event.commit();
+            }
+        }, writer);
+    }
+
+    /** Queues a finished batch, waiting while all slots are taken. */
+    void submit(ResultColumns batch) throws IOException, InterruptedException {
+        check();
+        long t0 = System.nanoTime();
+        queue.put(batch);
+        stallNanos += System.nanoTime() - t0;
+        simulations += batch.count();
+    }
+
+    private void drain() {
+        try {
+            ResultColumns batch;
+            while ((batch = queue.take()) != END) {
+                if (failure != null) continue;
+                long t0 = System.nanoTime();
+                try {
+                    sink.write(batch);
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                writeNanos += System.nanoTime() - t0;
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+        }
+    }
+
+    // throws the writer's failure once; close after a failed submit must not throw it again
+    private void check() throws IOException {
+        Throwable t = failure;
+        if (t == null || reported) return;
+        reported = true;
+        if (t instanceof IOException e) throw e;
+        if (t instanceof RuntimeException e) throw e;
+        if (t instanceof Error e) throw e;
+        throw new IOException("Result writer failed", t);
+    }
+
+    /** Simulations submitted so far. */
+    long simulations() {
+        return simulations;
+    }
+
+    /** Time the writer thread spent writing, in seconds. */
+    double writeSeconds() {
+        return writeNanos / 1e9;
+    }
+
+    /** Time submit waited for a free slot, i.e. compute held up by I/O, in seconds. */
+    double stallSeconds() {
+        return stallNanos / 1e9;
+    }
+
+    /** Waits until every queued batch is written, then closes the sink. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException("Interrupted while waiting for the result writer");
+            ie.initCause(e);
+            throw ie;
+        } finally {
+            if (onClose != null) onClose.close();
+        }
+        check();
+    }
+}
@@ -0,0 +1,21 @@
+package com.tradesim;
+
+import com.tradesim.model.SimulationResult;
+import com.tradesim.model.StopReason;
+
+/**
+ * Where workers put per-run Monte Carlo outputs, addressed by simulation index. Workers write
+ * disjoint indices without locking: {@link ResultColumns} keeps them on the heap,
+ * {@link MappedResultStore} in a memory-mapped results file.
+ */
+public interface ResultStore {
+    void set(long index, long balance, double drawdown, int trades, int target, StopReason stop);
+
+    default void set(long index, SimulationResult r) {
+        set(index, r.finalBalance(), r.maxDrawdown(), r.tradesExecuted(), r.targetTrade(), r.stopReason());
+    }
+
+    boolean hasSamples();
+
+    void setSamples(long index, SampleSet samples);
+}
@@ -0,0 +1,322 @@
+package com.tradesim;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Columnar binary format for Monte Carlo results. All numbers are little-endian and every
+ * section starts on an 8-byte boundary so columns can be viewed in place.
+ *
+ * <pre>
+ * file header : long MAGIC, int VERSION, int configLength, config JSON, pad to 8
+ * block*      : int BLOCK_MAGIC, int count, long startIndex, int flags, int sampleSize,
+ *               long payloadLength, payload
+ * payload     : long finalBalance[count], double maxDrawdown[count],
+ *               int tradesExecuted[count] (pad to 8), int targetTrade[count] (pad to 8),
+ *               byte stopReason[count] (pad to 8), long hitTarget bits, long bankrupt bits,
+ *               [FLAG_SAMPLES: double rrr[count * sampleSize], long win bits]
+ * </pre>
+ *
+ * Version 1 files lack targetTrade and stopReason; they are still readable. A file whose name
+ * ends in {@code .gz} is the same byte stream gzip-compressed at the fastest level; readers
+ * inflate it before mapping.
+ */
+public class ResultsFile {
+    static final long MAGIC = 0x314D49534D495354L; // "TSIMSIM1"
+    static final int VERSION = 2;
+    static final int BLOCK_MAGIC = 0x4B4C4231; // "1BLK"
+    static final int BLOCK_HEADER_BYTES = 32;
+    static final int FLAG_SAMPLES = 1;
+
+    // keeps every column of a block under the 2 GB limit of a single mapping
+    static final int MAX_BLOCK_RESULTS = 1 << 27;
+
+    private static final int CHUNK_BYTES = 1 << 20;
+    // files written by newer versions may carry Config fields this one does not know; in a holder
+    // so that Jackson loads only when a file is written or read
+    private static final class Json {
+        static final ObjectMapper MAPPER = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /** Where a Monte Carlo run saves its results: montecarlo_results.tsim, or .tsim.gz with compressResults. */
+    static Path defaultPath(Config cfg) {
+        return Path.of(cfg.compressResults ? "montecarlo_results.tsim.gz" : "montecarlo_results.tsim");
+    }
+
+    static boolean compressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    static long words(long bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static long align8(long n) {
+        return (n + 7) & ~7L;
+    }
+
+    static long payloadLength(int count, int sampleSize) {
+        long length = 16L * count + 2 * align8(4L * count) + align8(count) + 16 * words(count);
+        if (sampleSize > 0) {
+            long samples = (long) count * sampleSize;
+            length += 8 * samples + 8 * words(samples);
+        }
+        return length;
+    }
+
+    /** The file header for a run with this Config, padded to 8 bytes. */
+    static ByteBuffer fileHeader(Config cfg) throws IOException {
+        byte[] config = Json.MAPPER.writeValueAsBytes(cfg);
+        ByteBuffer head = ByteBuffer.allocate(Math.toIntExact(align8(16L + config.length))).order(ByteOrder.LITTLE_ENDIAN);
+        head.putLong(MAGIC).putInt(VERSION).putInt(config.length).put(config);
+        return head.position(head.capacity()).flip();
+    }
+
+    static ByteBuffer blockHeader(int count, long startIndex, int sampleSize) {
+        ByteBuffer head = ByteBuffer.allocate(BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(BLOCK_MAGIC).putInt(count).putLong(startIndex)
+                .putInt(sampleSize > 0 ? FLAG_SAMPLES : 0).putInt(sampleSize)
+                .putLong(payloadLength(count, sampleSize));
+        return head.flip();
+    }
+
+    /** Header of an open results file: the run's Config and where the first block starts. */
+    public record Header(int version, Config config, long firstBlockOffset) {
+    }
+
+    /**
+     * Appends blocks to a results file through a single reusable 1 MB buffer, so memory use
+     * does not depend on the number of results. A .gz path is deflated on the way out.
+     */
+    public static class Writer implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final long targetBalance;
+        private long written;
+
+        public Writer(Path path, Config cfg) throws IOException {
+            this.channel = compressed(path) ? Channels.newChannel(deflating(path))
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.targetBalance = cfg.targetBalance;
+            put(fileHeader(cfg));
+        }
+
+        private static GZIPOutputStream deflating(Path path) throws IOException {
+            return new GZIPOutputStream(Files.newOutputStream(path), CHUNK_BYTES) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+
+        public void writeBlock(ResultColumns cols) throws IOException {
+            int from = 0;
+            do {
+                int to = Math.min(cols.count, from + MAX_BLOCK_RESULTS);
+                writeRange(cols, from, to);
+                from = to;
+            } while (from < cols.count);
+        }
+
+        private void writeRange(ResultColumns cols, int from, int to) throws IOException {
+            int n = to - from;
+            int sampleSize = cols.sampleSize;
+            put(blockHeader(n, cols.startIndex + from, sampleSize));
+            putLongs(cols.finalBalance, from, to);
+            putDoubles(cols.maxDrawdown, from, to);
+            putInts(cols.tradesExecuted, from, to);
+            pad();
+            putInts(cols.targetTrade, from, to);
+            pad();
+            putBytes(cols.stopReason, from, to);
+            pad();
+            for (int i = from; i < to; i += 64) {
+                long word = 0;
+                for (int bit = 0; bit < 64 && i + bit < to; bit++) {
+                    if (cols.finalBalance[i + bit] >= targetBalance) word |= 1L << bit;
+                }
+                ensure(8);
+                buf.putLong(word);
+            }
+            for (int i = from; i < to; i += 64) {
+                long word = 0;
+                for (int bit = 0; bit < 64 && i + bit < to; bit++) {
+                    if (cols.finalBalance[i + bit] == 0) word |= 1L << bit;
+                }
+                ensure(8);
+                buf.putLong(word);
+            }
+            if (cols.hasSamples()) {
+                int start = from * sampleSize;
+                int end = to * sampleSize;
+                putDoubles(cols.sampleRrr, start, end);
+                boolean[] wins = cols.sampleWin;
+                for (int i = start; i < end; i += 64) {
+                    long word = 0;
+                    for (int bit = 0; bit < 64 && i + bit < end; bit++) {
+                        if (wins[i + bit]) word |= 1L << bit;
+                    }
+                    ensure(8);
+                    buf.putLong(word);
+                }
+            }
+        }
+
+        // columns go in as bulk copies through little-endian views of the buffer, a buffer-full at a time
+        private void putLongs(long[] a, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int k = Math.min(to - from, buf.remaining() / 8);
+                buf.asLongBuffer().put(a, from, k);
+                buf.position(buf.position() + 8 * k);
+                from += k;
+            }
+        }
+
+        private void putDoubles(double[] a, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(8);
+                int k = Math.min(to - from, buf.remaining() / 8);
+                buf.asDoubleBuffer().put(a, from, k);
+                buf.position(buf.position() + 8 * k);
+                from += k;
+            }
+        }
+
+        private void putInts(int[] a, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(4);
+                int k = Math.min(to - from, buf.remaining() / 4);
+                buf.asIntBuffer().put(a, from, k);
+                buf.position(buf.position() + 4 * k);
+                from += k;
+            }
+        }
+
+        private void putBytes(byte[] a, int from, int to) throws IOException {
+            while (from < to) {
+                ensure(1);
+                int k = Math.min(to - from, buf.remaining());
+                buf.put(a, from, k);
+                from += k;
+            }
+        }
+
+        /** Copies the blocks of another (uncompressed) results file verbatim, without decoding them. */
+        public void appendBlocks(Path other) throws IOException {
+            flush();
+            try (FileChannel in = FileChannel.open(other, StandardOpenOption.READ)) {
+                Header header = readHeader(in);
+                if (header.version() != VERSION) {
+                    throw new IOException(other + " is a version " + header.version() + " results file; expected " + VERSION);
+                }
+                long position = header.firstBlockOffset();
+                long size = in.size();
+                while (position < size) {
+                    long n = in.transferTo(position, size - position, channel);
+                    position += n;
+                    written += n;
+                }
+            }
+        }
+
+        public long bytesWritten() {
+            return written + buf.position();
+        }
+
+        // headers are far smaller than the buffer
+        private void put(ByteBuffer bytes) throws IOException {
+            ensure(bytes.remaining());
+            buf.put(bytes);
+        }
+
+        private void pad() throws IOException {
+            while ((bytesWritten() & 7) != 0) {
+                ensure(1);
+                buf.put((byte) 0);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                written += channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer head = readFully(channel, 0, 16);
+        if (head.getLong() != MAGIC) {
+            throw new IOException("Not a tradesim results file");
+        }
+        int version = head.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported results file version " + version);
+        }
+        int configLength = head.getInt();
+        ByteBuffer json = readFully(channel, 16, configLength);
+        byte[] config = new byte[configLength];
+        json.get(config);
+        return new Header(version, Json.MAPPER.readValue(config, Config.class), align8(16L + configLength));
+    }
+
+    /** Fixed-size header in front of every block; payloadOffset is where its columns start. */
+    public record BlockHeader(int count, long startIndex, int sampleSize, long payloadOffset, long payloadLength) {
+        public long nextBlockOffset() {
+            return payloadOffset + payloadLength;
+        }
+    }
+
+    public static BlockHeader readBlockHeader(FileChannel channel, long position) throws IOException {
+        ByteBuffer bh = readFully(channel, position, BLOCK_HEADER_BYTES);
+        if (bh.getInt() != BLOCK_MAGIC) {
+            throw new IOException("Corrupt block at offset " + position);
+        }
+        int count = bh.getInt();
+        long startIndex = bh.getLong();
+        int flags = bh.getInt();
+        int sampleSize = bh.getInt();
+        if ((flags & FLAG_SAMPLES) == 0) sampleSize = 0;
+        return new BlockHeader(count, startIndex, sampleSize, position + BLOCK_HEADER_BYTES, bh.getLong());
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(length)).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("Truncated results file");
+            }
+        }
+        return buf.flip();
+    }
+}
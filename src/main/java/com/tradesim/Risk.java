@@ -1,6 +1,19 @@
 package com.tradesim;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class Risk {
+    // distinct schedules kept; a sweep over decay factors or trade counts rarely needs more
+    private static final int MAX_SCHEDULES = 32;
+    private static final Map<ScheduleKey, double[]> SCHEDULES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ScheduleKey, double[]> eldest) {
+            return size() > MAX_SCHEDULES;
+        }
+    };
+
     public static double adjustRiskPercent(double baseRisk, int tradeIndex, int totalTrades, double[] decayFactors) {
         int quarter = Math.max(1, totalTrades / 5);
         double factor;
@@ -11,4 +24,38 @@ public class Risk {
         else factor = decayFactors[0];
         return baseRisk * factor;
     }
+
+    /**
+     * The risk factor of every trade index, so that the risk of trade t is baseRisk * schedule[t]
+     * exactly as {@link #adjustRiskPercent} computes it; all 1.0 when kellyCap is 0, which risks
+     * the base fraction unchanged. Built once per distinct (numTrades, riskDecayFactors) and kept
+     * in a small LRU cache; callers must not modify it.
+     */
+    public static double[] schedule(Config cfg) {
+        ScheduleKey key = new ScheduleKey(cfg.numTrades, cfg.kellyCap == 0 ? null : cfg.riskDecayFactors.clone());
+        synchronized (SCHEDULES) {
+            return SCHEDULES.computeIfAbsent(key, Risk::buildSchedule);
+        }
+    }
+
+    private static double[] buildSchedule(ScheduleKey key) {
+        double[] schedule = new double[key.numTrades];
+        for (int t = 0; t < schedule.length; t++) {
+            schedule[t] = key.decayFactors == null ? 1.0 : adjustRiskPercent(1.0, t, key.numTrades, key.decayFactors);
+        }
+        return schedule;
+    }
+
+    // decayFactors is null for the flat schedule
+    private record ScheduleKey(int numTrades, double[] decayFactors) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ScheduleKey k && k.numTrades == numTrades && Arrays.equals(k.decayFactors, decayFactors);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * numTrades + Arrays.hashCode(decayFactors);
+        }
+    }
 }
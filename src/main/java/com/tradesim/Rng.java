@@ -0,0 +1,79 @@
+package com.tradesim;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Per-simulation random streams derived from the master {@code Config.seed}. A simulation's
+ * stream depends only on (seed, index), so results are identical for any thread count or
+ * scheduling order, and a single run with the same seed reproduces simulation 0.
+ */
+public final class Rng {
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private Rng() {
+    }
+
+    public static long simulationSeed(long masterSeed, long index) {
+        return mix64(mix64(masterSeed) + GOLDEN_GAMMA * (index + 1));
+    }
+
+    public static SplittableRandom forSimulation(long masterSeed, long index) {
+        return new SplittableRandom(simulationSeed(masterSeed, index));
+    }
+
+    /** Stream for entry k of a shared sample pool; negative indices never collide with simulations. */
+    public static SplittableRandom forSampleSet(long masterSeed, int k) {
+        return forSimulation(masterSeed, -1L - k);
+    }
+
+    /**
+     * Draw number {@code i} in [0, bound) of a counter-based stream keyed by {@code key}:
+     * SplitMix64 of the counter, reduced with a multiply-shift instead of a modulo. It needs
+     * no state and no division, so a batch of simulations can compute it lane-wise.
+     */
+    public static int boundedDraw(long key, long i, int bound) {
+        long z = mix64(key + GOLDEN_GAMMA * (i + 1));
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * The antithetic counterpart of rnd for the draws a sample set is generated from: nextDouble
+     * gives 1 - u, nextGaussian -g and nextInt(bound) bound - 1 - k, each as likely as the
+     * original draw but on the other side. nextLong passes through, so keys taken from it (the
+     * trade picks) stay shared with the original.
+     */
+    public static RandomGenerator mirror(RandomGenerator rnd) {
+        return new RandomGenerator() {
+            @Override
+            public long nextLong() {
+                return rnd.nextLong();
+            }
+
+            @Override
+            public double nextDouble() {
+                return 1.0 - rnd.nextDouble();
+            }
+
+            @Override
+            public double nextGaussian() {
+                return -rnd.nextGaussian();
+            }
+
+            @Override
+            public int nextInt(int bound) {
+                return bound - 1 - rnd.nextInt(bound);
+            }
+        };
+    }
+
+    // Stafford variant 13 finalizer, as used by SplittableRandom
+    static final long MIX_1 = 0xbf58476d1ce4e5b9L;
+    static final long MIX_2 = 0x94d049bb133111ebL;
+
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * MIX_1;
+        z = (z ^ (z >>> 27)) * MIX_2;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,59 @@
+package com.tradesim;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A fixed set of pre-generated sample sets shared read-only by all workers. With
+ * {@code cfg.samplePoolSize > 0} each simulation draws one pool entry from its own stream
+ * instead of generating a fresh set, so per-simulation setup is a single draw. The entries
+ * (and their Kelly fractions) depend only on the master seed.
+ */
+public final class SamplePool {
+    private final SampleSet[] sets;
+
+    private SamplePool(SampleSet[] sets) {
+        this.sets = sets;
+    }
+
+    /** The pool configured by cfg, or null when every simulation generates its own set. */
+    public static SamplePool create(Config cfg) {
+        if (cfg.samplePoolSize <= 0) return null;
+        SampleSet[] sets = new SampleSet[cfg.samplePoolSize];
+        for (int k = 0; k < sets.length; k++) {
+            sets[k] = new SampleSet(cfg.numSampleTrades);
+            TradeGenerator.generate(cfg, Rng.forSampleSet(cfg.seed, k), sets[k]);
+            if (Estimates.antithetic(cfg)) sets[k].sortByOutcome();
+            sets[k].kellyFraction();
+        }
+        return new SamplePool(sets);
+    }
+
+    public int size() {
+        return sets.length;
+    }
+
+    public SampleSet get(int k) {
+        return sets[k];
+    }
+
+    public SampleSet draw(RandomGenerator rnd) {
+        return sets[rnd.nextInt(sets.length)];
+    }
+
+    /** The pool's draw when there is a pool, otherwise a fresh set generated into scratch. */
+    static SampleSet sampleSet(Config cfg, SamplePool pool, RandomGenerator rnd, SampleSet scratch) {
+        return sampleSet(cfg, pool, rnd, scratch, -1);
+    }
+
+    /**
+     * As above, but for a stratum of {@link Estimates#strata(Config)} (negative = drawn): pool
+     * entry {@code stratum}, or a fresh set with that stratum's win count. Antithetic runs get
+     * their fresh sets sorted by outcome, as the pool's already are.
+     */
+    static SampleSet sampleSet(Config cfg, SamplePool pool, RandomGenerator rnd, SampleSet scratch, int stratum) {
+        if (pool != null) return stratum >= 0 ? pool.get(stratum) : pool.draw(rnd);
+        TradeGenerator.generate(cfg, rnd, scratch, stratum);
+        if (Estimates.antithetic(cfg)) scratch.sortByOutcome();
+        return scratch;
+    }
+}
@@ -0,0 +1,111 @@
+package com.tradesim;
+
+import com.tradesim.model.Trade;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A simulation's sample trades packed into primitive arrays: the rrr values and a bitset of
+ * wins. {@link TradeGenerator#generate} fills one in place, so a worker reuses a single
+ * instance for all its simulations. The Kelly fraction is computed once per fill.
+ */
+public final class SampleSet {
+    final double[] rrr;
+    final long[] wins;
+    int size;
+    private double kellyFraction = Double.NaN;
+
+    public SampleSet(int capacity) {
+        this.rrr = new double[capacity];
+        this.wins = new long[(capacity + 63) >>> 6];
+    }
+
+    public static SampleSet of(List<Trade> trades) {
+        SampleSet s = new SampleSet(trades.size());
+        s.setAll(trades);
+        return s;
+    }
+
+    void setAll(List<Trade> trades) {
+        clear(trades.size());
+        for (int i = 0; i < size; i++) {
+            Trade t = trades.get(i);
+            rrr[i] = t.rrr();
+            if (t.win()) setWin(i);
+        }
+    }
+
+    public int capacity() {
+        return rrr.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double rrr(int i) {
+        return rrr[i];
+    }
+
+    public boolean win(int i) {
+        return (wins[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /** Empties the set and resizes it to n entries, all losses. */
+    void clear(int n) {
+        if (n > rrr.length) throw new IllegalArgumentException("sample set capacity " + rrr.length + " < " + n);
+        size = n;
+        Arrays.fill(wins, 0L);
+        kellyFraction = Double.NaN;
+    }
+
+    void setWin(int i) {
+        wins[i >>> 6] |= 1L << i;
+    }
+
+    void swap(int i, int j) {
+        double r = rrr[i];
+        rrr[i] = rrr[j];
+        rrr[j] = r;
+        boolean wi = win(i);
+        if (wi != win(j)) {
+            wins[i >>> 6] ^= 1L << i;
+            wins[j >>> 6] ^= 1L << j;
+        }
+    }
+
+    /**
+     * Reorders the set by outcome: losses first, then wins by increasing rrr, so that a pick's
+     * index is its rank. The set's distribution does not depend on order; antithetic runs use
+     * this to turn mirrored picks into opposite outcomes.
+     */
+    void sortByOutcome() {
+        int losses = 0;
+        for (int i = 0; i < size; i++) {
+            if (!win(i)) swap(i, losses++);
+        }
+        Arrays.sort(rrr, losses, size);
+        kellyFraction = Double.NaN;
+    }
+
+    public int winCount() {
+        int n = 0;
+        for (long w : wins) n += Long.bitCount(w);
+        return n;
+    }
+
+    public double kellyFraction() {
+        if (Double.isNaN(kellyFraction)) kellyFraction = Kelly.calculateKellyFraction(this);
+        return kellyFraction;
+    }
+
+    public List<Trade> toTrades() {
+        List<Trade> trades = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            trades.add(new Trade(rrr[i], win(i)));
+        }
+        return trades;
+    }
+}
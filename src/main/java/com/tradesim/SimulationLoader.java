@@ -1,71 +1,37 @@
 package com.tradesim;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.msgpack.core.MessageUnpacker;
-import org.msgpack.core.MessagePack;
-
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
-
-import static java.lang.String.format;
 
 public class SimulationLoader {
-    private static final ObjectMapper mapper = new ObjectMapper();
     public static void main(String[] args) throws Exception {
-        summarizeFromFile("montecarlo_results.mpack");
+        summarizeFromFile(args.length > 0 ? args[0] : "montecarlo_results.tsim");
     }
 
-    public static Map<String, Object> loadSimulationResults(String filePath) throws IOException {
-        byte[] data = Files.readAllBytes(Path.of(filePath));
-        MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(data);
-        int length = unpacker.unpackBinaryHeader();
-        byte[] jsonBytes = unpacker.readPayload(length);
-        unpacker.close();
-
-        String json = new String(jsonBytes, StandardCharsets.UTF_8);
-        return mapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+    public static MappedResults loadSimulationResults(String filePath) throws IOException {
+        return MappedResults.open(Path.of(filePath));
     }
 
     public static void summarizeFromFile(String filePath) throws Exception {
-        Map<String, Object> loaded = loadSimulationResults(filePath);
-
-        // Deserialize config
-        Config cfg = mapper.convertValue(loaded.get("config"), Config.class);
-
-        // Get results
-        List<Map<String, Object>> results = (List<Map<String, Object>>) loaded.get("results");
-        System.out.println(results.size());
-
-        // Extract final balances
-        List<Long> finalBalances = results.stream()
-                .map(r -> ((Number) r.get("final_balance")).longValue())
-                .toList();
-
-        int count = finalBalances.size();
-        int hits = 0;
-        int bankrupt = 0;
-        long sum = 0;
-        long maximum = finalBalances.get(0);
-        long minimum = finalBalances.get(0);
-
-        long[] sorted = new long[count]; // For median
-        for (int i = 0; i < count; i++) {
-            long val = finalBalances.get(i);
-            sorted[i] = val;
-            sum += val;
-            minimum = Math.min(minimum, val);
-            maximum = Math.max(maximum, val);
-            if (val >= cfg.targetBalance) hits++;
-            if (val == 0) bankrupt++;
+        try (MappedResults results = loadSimulationResults(filePath)) {
+            summarize(results);
         }
+    }
 
-        Arrays.sort(sorted);
-        long median = sorted[count / 2];
-        double avg = (double) sum / count;
+    private static void summarize(MappedResults results) {
+        Config cfg = results.config();
+        System.out.println(results.count());
+
+        long hits = results.hits();
+        long bankrupt = results.bankrupt();
+        // one parallel pass; every report below is derived from these histograms
+        MonteCarloStats stats = new MonteCarloStats(cfg);
+        results.addTo(stats);
+        long minimum = stats.minBalance();
+        long maximum = stats.maxBalance();
+        double avg = stats.averageBalance();
+        // from the histogram, like the Monte Carlo summary: copying every balance would undo the mapping
+        long median = stats.medianBalance();
 
         System.out.println("\n" + "=".repeat(80));
 //        System.out.println(format("Monte Carlo Simulation Results (%,d runs)) :", cfg.numSimulations));
@@ -82,6 +48,12 @@ public class SimulationLoader {
         System.out.printf("\nMedian final balance: $%,d", median);
         System.out.printf("\nMaximum final balance: $%,d", maximum);
         System.out.printf("\nAverage final balance: $%,d", (long) avg);
+        if (results.hasStopColumns()) {
+            Histogram ttt = stats.timeToTargetHistogram();
+            if (ttt.count() > 0) {
+                System.out.printf("\nMedian trades to target: %d (%,d runs reached it)", ttt.valueAtQuantile(0.5), ttt.count());
+            }
+        }
         System.out.println("\n" + "=".repeat(80));
 
         // Optional deeper analysis
@@ -103,7 +75,8 @@ public class SimulationLoader {
 //        Analyze.analyzePercentiles(finalBalances, .60, .90);
 
         System.out.println("\n" + "=".repeat(80));
-        Analyze.analyzePercentiles(finalBalances, .72, 0.98);
+        Analyze.analyzePercentiles(stats.balanceHistogram(), .72, 0.98);
+        if (cfg.logBinsPerDecade > 0) Analyze.analyzeLogScale(stats.balanceHistogram(), cfg.logBinsPerDecade);
     }
 
 }
@@ -1,57 +1,58 @@
 package com.tradesim;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.msgpack.core.MessageBufferPacker;
-import org.msgpack.core.MessagePack;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
-import java.util.zip.GZIPOutputStream;
 
 public class SimulationSaver {
-    public static void saveSimulationResults(Config config, List<Map<String, Object>> results, String filePath) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-
-        Map<String, Object> finalObject = new HashMap<>();
-        finalObject.put("config", config);       // Assuming config is serializable to JSON
-        finalObject.put("results", results);
-
-//        Map<String, Object> tradeObject = new HashMap<>();
-//        List<Map<String, Object>> tradeLogs = new ArrayList<>();
-//        for(Map<String, Object> entry: results) {
-//            tradeLogs.add((Map<String, Object>) entry.get("trade_log"));
-//            entry.remove("trade_log");
-//        }
-//        tradeObject.put("trade_logs", tradeLogs);
-//        String tradeLogsJson = mapper.writeValueAsString(finalObject);
-//        try (GZIPOutputStream gos = new GZIPOutputStream(new FileOutputStream("tradeLogs.json.gz"))) {
-//            gos.write(tradeLogsJson.getBytes());
-//        }
+    public static void saveSimulationResults(Config config, ResultColumns results, String filePath) throws IOException {
+        Metrics.SaveEvent event = new Metrics.SaveEvent();
+        event.begin();
+        try (ResultsFile.Writer writer = new ResultsFile.Writer(Path.of(filePath), config)) {
+            writer.writeBlock(results);
+        }
+        if (event.shouldCommit()) {
+            event.path = filePath;
+            event.simulations = results.count();
+            event.bytes = Files.size(Path.of(filePath));
+            event.commit();
+        }
+        System.out.println("Saved " + results.count() + " simulation results to: " + filePath);
+    }
 
-        // Convert to JSON string
-        String resultsJson = mapper.writeValueAsString(finalObject);
-//        try (FileWriter fw = new FileWriter("results.json")) {
-//            fw.write(resultsJson);
-//        }
-        try (GZIPOutputStream gos = new GZIPOutputStream(new FileOutputStream("results.json.gz"))) {
-            gos.write(resultsJson.getBytes());
+    /** Copies the blocks of the results file part behind a new header that records config. */
+    public static void saveSimulationResults(Config config, Path part, Path target) throws IOException {
+        Metrics.SaveEvent event = new Metrics.SaveEvent();
+        event.begin();
+        try (ResultsFile.Writer writer = new ResultsFile.Writer(target, config)) {
+            writer.appendBlocks(part);
+        }
+        if (event.shouldCommit()) {
+            event.path = target.toString();
+            event.simulations = config.numSimulations;
+            event.bytes = Files.size(target);
+            event.commit();
         }
+        System.out.println("Saved " + config.numSimulations + " simulation results to: " + target);
+    }
 
-        // Pack JSON string using MessagePack for compact binary
-        MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
-        byte[] jsonBytes = resultsJson.getBytes(StandardCharsets.UTF_8);
-        packer.packBinaryHeader(jsonBytes.length);
-        packer.writePayload(jsonBytes);
-        packer.close();
+    /** Reports a results file written by a pipeline, and how much of the writing compute waited for. */
+    static void report(ResultPipeline pipeline, Path path) throws IOException {
+        System.out.printf("Saved %d simulation results to: %s (%,d bytes; writer busy %.2f s, compute waited %.2f s)%n",
+                pipeline.simulations(), path, Files.size(path), pipeline.writeSeconds(), pipeline.stallSeconds());
+    }
 
-        // Write to binary file
-        Files.write(Path.of(filePath), packer.toByteArray());
-        System.out.println("Saved " + results.size() + " simulation results to: " + filePath);
+    /** Completes a results file that was written in place during the run. */
+    public static void saveSimulationResults(MappedResultStore store) throws IOException {
+        Metrics.SaveEvent event = new Metrics.SaveEvent();
+        event.begin();
+        store.finish();
+        if (event.shouldCommit()) {
+            event.path = store.path().toString();
+            event.simulations = store.count();
+            event.bytes = Files.size(store.path());
+            event.commit();
+        }
+        System.out.println("Saved " + store.count() + " simulation results to: " + store.path());
     }
 }
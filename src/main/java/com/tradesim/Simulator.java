@@ -1,79 +1,164 @@
 package com.tradesim;
 
+import com.tradesim.model.SimulationResult;
+import com.tradesim.model.StopReason;
 import com.tradesim.model.Trade;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class Simulator {
-    public static Map<String, Object> simulateTrades(Config cfg, List<Trade> trades) {
+    /**
+     * Reusable per-worker buffer for the primitive kernel: a sample set that generated (or
+     * List-supplied) samples are written into.
+     */
+    public static final class Scratch {
+        SampleSet samples;
+        private Config scheduleConfig;
+        private double[] riskSchedule;
+
+        public Scratch(Config cfg) {
+            this.samples = new SampleSet(cfg.numSampleTrades);
+        }
+
+        public SampleSet samples() {
+            return samples;
+        }
+
+        // the cached schedule of the config this scratch last ran
+        double[] riskSchedule(Config cfg) {
+            if (scheduleConfig != cfg) {
+                riskSchedule = Risk.schedule(cfg);
+                scheduleConfig = cfg;
+            }
+            return riskSchedule;
+        }
+
+        void ensureCapacity(int numSamples) {
+            if (samples.capacity() < numSamples) {
+                samples = new SampleSet(numSamples);
+            }
+        }
+    }
+
+    public static SimulationResult simulate(Config cfg, List<Trade> trades, Scratch scratch, RandomGenerator rnd) {
+        return simulate(cfg, trades, scratch, rnd, null);
+    }
+
+    public static SimulationResult simulate(Config cfg, List<Trade> trades, Scratch scratch, RandomGenerator rnd,
+                                            TradeSink sink) {
+        scratch.ensureCapacity(trades.size());
+        scratch.samples.setAll(trades);
+        return simulate(cfg, scratch.samples, scratch, rnd, sink);
+    }
+
+    public static SimulationResult simulate(Config cfg, SampleSet samples, Scratch scratch, RandomGenerator rnd) {
+        return simulate(cfg, samples, scratch, rnd, null);
+    }
+
+    /** Runs one simulation, handing every executed trade to sink when it is non-null. */
+    public static SimulationResult simulate(Config cfg, SampleSet samples, Scratch scratch, RandomGenerator rnd,
+                                            TradeSink sink) {
+        return simulate(cfg, samples, scratch, rnd, sink, false);
+    }
+
+    /**
+     * As above; with mirrored set, every pick k becomes size - 1 - k, the antithetic partner of
+     * the run with the same rnd (see {@link SampleSet#sortByOutcome()}).
+     */
+    static SimulationResult simulate(Config cfg, SampleSet samples, Scratch scratch, RandomGenerator rnd,
+                                     TradeSink sink, boolean mirrored) {
+        int numSamples = samples.size();
+        double[] rrr = samples.rrr;
+        long[] wins = samples.wins;
+
         long balance = cfg.startingBalance;
-        List<Long> balanceHistory = new ArrayList<>();
-        balanceHistory.add(balance);
         long maxBalance = balance;
         double maxDrawdown = 0.0;
 
-        double kellyFraction = Kelly.calculateKellyFraction(trades);
-        double cappedKellyFraction = cfg.kellyCap == 0 ? cfg.maxRiskPrct: kellyFraction * cfg.kellyCap;
-        Random rnd = new Random(cfg.seed);
-
-        // sampled trades (with replacement)
-        List<Trade> sampledTrades = new ArrayList<>();
-        for (int i = 0; i < cfg.numTrades; i++) {
-            sampledTrades.add(trades.get(rnd.nextInt(trades.size())));
-        }
+        double kellyFraction = samples.kellyFraction();
+        double cappedKellyFraction = cfg.kellyCap == 0 ? cfg.maxRiskPrct : kellyFraction * cfg.kellyCap;
+        double taxRate = cfg.taxPct / 100.0;
+        double[] riskSchedule = scratch.riskSchedule(cfg);
+        // trade picks come from a counter-based stream keyed off rnd (see Rng.boundedDraw)
+        long pickKey = rnd.nextLong();
 
-        List<Map<String, Object>> tradeLog = new ArrayList<>();
-        for (int i = 0; i < sampledTrades.size(); i++) {
-            Trade trade = sampledTrades.get(i);
-            double currentRiskPercent = cfg.kellyCap == 0 ? cappedKellyFraction: Risk.adjustRiskPercent(cappedKellyFraction, i, cfg.numTrades, cfg.riskDecayFactors);
+        int executed = 0;
+        int targetTrade = 0;
+        StopReason stop = StopReason.COMPLETED;
+        while (executed < cfg.numTrades) {
+            int pick = Rng.boundedDraw(pickKey, executed, numSamples);
+            if (mirrored) pick = numSamples - 1 - pick;
+            double currentRiskPercent = cappedKellyFraction * riskSchedule[executed];
             long riskAmount = (long) Math.floor(balance * currentRiskPercent);
-            long start = balance;
-            double actualRiskPct = start == 0 ? 0.0 : (riskAmount / (double) start) * 100.0;
-
-            long reward = 0;
-            String outcome;
-            long amount;
-            if (trade.win()) {
-                long profit = (long) Math.floor(riskAmount * trade.rrr());
-                long tax = cfg.calcTax ? (long) Math.floor(profit * (cfg.taxPct / 100.0)) : 0;
-                reward = profit - tax;
-                balance += reward;
-                outcome = "Win";
-                amount = reward;
+            long startBalance = balance;
+            boolean win = (wins[pick >>> 6] & (1L << pick)) != 0;
+
+            if (win) {
+                long profit = (long) Math.floor(riskAmount * rrr[pick]);
+                long tax = cfg.calcTax ? (long) Math.floor(profit * taxRate) : 0;
+                balance += profit - tax;
             } else {
                 balance -= riskAmount;
-                reward = -riskAmount;
-                outcome = "Loss";
-                amount = -riskAmount;
             }
 
             if (balance < 0) balance = 0;
-            balanceHistory.add(balance);
             if (balance > maxBalance) maxBalance = balance;
-            double drawdown = maxBalance == 0 ? 0.0 : ((double)(maxBalance - balance) / maxBalance) * 100.0;
+            double drawdown = maxBalance == 0 ? 0.0 : ((double) (maxBalance - balance) / maxBalance) * 100.0;
             if (drawdown > maxDrawdown) maxDrawdown = drawdown;
 
-            Map<String, Object> entry = new HashMap<>();
-            entry.put("trade_num", i + 1);
-            entry.put("outcome", outcome);
-            entry.put("rrr", trade.rrr());
-            entry.put("actual_risk_pct", actualRiskPct);
-            entry.put("risk_amount", riskAmount);
-            entry.put("amount", amount);
-            entry.put("start_balance", start);
-            entry.put("end_balance", balance);
-            tradeLog.add(entry);
-
-            if (balance <= 0) {
-                System.out.println("Account depleted after " + (i + 1) + " trades");
-                break;
-            }
+            executed++;
+            if (sink != null) sink.trade(executed, pick, win, rrr[pick], riskAmount, startBalance, balance);
+
+            if (targetTrade == 0 && balance >= cfg.targetBalance) targetTrade = executed;
+            stop = stopReason(cfg, balance, maxDrawdown);
+            if (stop != StopReason.COMPLETED) break;
+        }
+        return new SimulationResult(balance, maxDrawdown, executed, targetTrade, stop);
+    }
+
+    /** The stopping rule that ends a run after a trade, or COMPLETED to keep trading. */
+    static StopReason stopReason(Config cfg, long balance, double maxDrawdown) {
+        if (balance <= 0) return StopReason.BANKRUPT;
+        if (cfg.stopAtTarget && balance >= cfg.targetBalance) return StopReason.TARGET;
+        if (balance <= cfg.ruinBalance) return StopReason.RUIN;
+        if (cfg.stopDrawdownPct > 0 && maxDrawdown >= cfg.stopDrawdownPct) return StopReason.DRAWDOWN;
+        return StopReason.COMPLETED;
+    }
+
+    public static Map<String, Object> simulateTrades(Config cfg, List<Trade> trades, RandomGenerator rnd) {
+        List<Long> balanceHistory = new ArrayList<>(cfg.numTrades + 1);
+        List<Trade> sampledTrades = new ArrayList<>(cfg.numTrades);
+        List<Map<String, Object>> tradeLog = new ArrayList<>(cfg.numTrades);
+        balanceHistory.add(cfg.startingBalance);
+        SimulationResult sim = simulate(cfg, trades, new Scratch(cfg), rnd,
+                (tradeNum, sample, win, rrr, riskAmount, start, end) -> {
+                    Trade trade = trades.get(sample);
+                    balanceHistory.add(end);
+                    sampledTrades.add(trade);
+
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("trade_num", tradeNum);
+                    entry.put("outcome", trade.win() ? "Win" : "Loss");
+                    entry.put("rrr", trade.rrr());
+                    entry.put("actual_risk_pct", start == 0 ? 0.0 : (riskAmount / (double) start) * 100.0);
+                    entry.put("risk_amount", riskAmount);
+                    entry.put("amount", end - start);
+                    entry.put("start_balance", start);
+                    entry.put("end_balance", end);
+                    tradeLog.add(entry);
+                });
+        int executed = sim.tradesExecuted();
+        if (sim.stopReason() == StopReason.BANKRUPT) {
+            System.out.println("Account depleted after " + executed + " trades");
+        } else if (sim.stopReason() != StopReason.COMPLETED) {
+            System.out.println("Stopped after " + executed + " trades: " + sim.stopReason());
         }
 
         Map<String, Object> result = new HashMap<>();
         result.put("balance_history", balanceHistory);
         result.put("sampled_trades", sampledTrades);
-        result.put("max_drawdown", maxDrawdown);
+        result.put("max_drawdown", sim.maxDrawdown());
         if(!cfg.montyCarlo)
             result.put("trade_log", tradeLog);
         return result;
@@ -0,0 +1,82 @@
+package com.tradesim;
+
+/**
+ * When an adaptive Monte Carlo run has simulated enough. After every batch the 95% confidence
+ * intervals of the success rate, bankruptcy rate and the balances at {@code toleranceQuantiles}
+ * are compared with the configured half-widths: absolute for the rates, relative to the value
+ * for the quantiles, 0 to leave one unchecked. The rates use the standard errors of
+ * {@link Estimates}, so they tighten faster under variance reduction; while a rate has seen no
+ * event (or nothing else) its half-width is the rule-of-three bound 3/n instead of zero. A
+ * quantile's interval is the distribution-free one between the balances at ranks
+ * nq -/+ 1.96 sqrt(nq(1 - q)), read from the balance histogram.
+ */
+final class StoppingRule {
+    private final Config cfg;
+
+    StoppingRule(Config cfg) {
+        this.cfg = cfg;
+    }
+
+    static void check(Config cfg) {
+        if (!cfg.adaptive) return;
+        if (cfg.numProcesses > 0) {
+            throw new IllegalStateException("adaptive runs stay in one process; set numProcesses to 0");
+        }
+        if (cfg.checkpointDir != null && !cfg.checkpointDir.isEmpty()) {
+            throw new IllegalStateException("adaptive runs cannot be checkpointed; unset checkpointDir");
+        }
+        double resolution = Math.scalb(1.0, -Histogram.DEFAULT_PRECISION_BITS);
+        if (cfg.quantileTolerance > 0 && cfg.quantileTolerance < resolution) {
+            throw new IllegalArgumentException(String.format(
+                    "quantileTolerance %.4f is below the balance histogram's resolution %.4f",
+                    cfg.quantileTolerance, resolution));
+        }
+    }
+
+    /** Whether every checked interval is within its tolerance. */
+    boolean met(MonteCarloStats stats) {
+        if (cfg.successRateTolerance > 0
+                && rateHalfWidth(stats, Estimates.SUCCESS, stats.hits()) > cfg.successRateTolerance) return false;
+        if (cfg.bankruptcyRateTolerance > 0
+                && rateHalfWidth(stats, Estimates.BANKRUPT, stats.bankrupt()) > cfg.bankruptcyRateTolerance) return false;
+        if (cfg.quantileTolerance > 0 && cfg.toleranceQuantiles != null) {
+            for (double q : cfg.toleranceQuantiles) {
+                if (quantileHalfWidth(stats, q) > cfg.quantileTolerance) return false;
+            }
+        }
+        return true;
+    }
+
+    static double rateHalfWidth(MonteCarloStats stats, int metric, long events) {
+        long n = stats.count();
+        if (n == 0) return Double.POSITIVE_INFINITY;
+        if (events == 0 || events == n) return 3.0 / n;
+        return stats.estimates().halfWidth(metric);
+    }
+
+    /** Half the width of the 95% interval of the balance at quantile q, relative to that balance. */
+    static double quantileHalfWidth(MonteCarloStats stats, double q) {
+        long n = stats.count();
+        if (n == 0) return Double.POSITIVE_INFINITY;
+        Histogram h = stats.balanceHistogram();
+        double spread = Estimates.Z95 * Math.sqrt(n * q * (1 - q));
+        long lo = h.valueAtRank((long) Math.floor(n * q - spread));
+        long hi = h.valueAtRank((long) Math.ceil(n * q + spread));
+        long value = h.valueAtQuantile(q);
+        return value == 0 ? (hi == 0 ? 0 : Double.POSITIVE_INFINITY) : (hi - lo) / 2.0 / value;
+    }
+
+    /** The current half-widths against their tolerances, one line. */
+    String progress(MonteCarloStats stats) {
+        StringBuilder s = new StringBuilder(String.format("%,d runs: success +/- %.4f%%, bankruptcy +/- %.4f%%",
+                stats.count(), 100 * rateHalfWidth(stats, Estimates.SUCCESS, stats.hits()),
+                100 * rateHalfWidth(stats, Estimates.BANKRUPT, stats.bankrupt())));
+        if (cfg.toleranceQuantiles != null) {
+            for (double q : cfg.toleranceQuantiles) {
+                s.append(String.format(", p%d +/- %.2f%%", Math.round(q * 100), 100 * quantileHalfWidth(stats, q)));
+            }
+        }
+        return s.append(String.format(" (tolerances %.4f%%, %.4f%%, %.2f%%)", 100 * cfg.successRateTolerance,
+                100 * cfg.bankruptcyRateTolerance, 100 * cfg.quantileTolerance)).toString();
+    }
+}
@@ -0,0 +1,235 @@
+package com.tradesim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.tradesim.model.StopReason;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many Config variants in one process. A sweep file lists overrides of the base config,
+ * as a grid (the cartesian product of the value lists, last axis varying fastest), as explicit
+ * points, or both:
+ *
+ * <pre>
+ * {
+ *   "output": "sweep_results.csv",
+ *   "grid": {
+ *     "kellyCap": [0.05, 0.1, 0.2],
+ *     "rr": [{"minRr": 2, "maxRr": 10}, {"minRr": 3, "maxRr": 20}]
+ *   },
+ *   "points": [{"winRateLow": 0.25, "winRateHigh": 0.28}]
+ * }
+ * </pre>
+ *
+ * An axis value that is an object sets several fields together; otherwise the axis name is the
+ * Config field. Points keep the base seed, so simulation i of every point starts from the same
+ * stream (common random numbers) and differences between points are less noisy. Each point's
+ * success rate is compared with point 0's run by run, and the standard error of that paired
+ * difference is reported next to the point's own. Each point runs whole on one worker thread and
+ * is written as one CSV row, in point order, as soon as it and all earlier points are done.
+ */
+public class Sweep {
+    static final String[] STAT_COLUMNS = {
+            "simulations", "success_rate", "bankruptcy_rate", "mean_balance", "p05_balance", "p25_balance",
+            "median_balance", "p75_balance", "p95_balance", "median_drawdown", "p95_drawdown", "max_drawdown",
+            "reached_target_rate", "median_trades_to_target", "success_rate_se", "success_diff_vs_point0",
+            "success_diff_se"};
+
+    record Point(int index, Map<String, JsonNode> overrides, Config cfg) {
+    }
+
+    /** A point's statistics and which of its simulations reached the target, by index. */
+    record Outcome(MonteCarloStats stats, Hits hits) {
+    }
+
+    // the success bit of every simulation of one point, for paired comparisons between points
+    static final class Hits implements ResultStore {
+        final long targetBalance;
+        final int count;
+        final long[] bits;
+
+        Hits(Config cfg) {
+            this.targetBalance = cfg.targetBalance;
+            this.count = cfg.numSimulations;
+            this.bits = new long[(count + 63) >>> 6];
+        }
+
+        @Override
+        public void set(long index, long balance, double drawdown, int trades, int target, StopReason stop) {
+            if (balance >= targetBalance) bits[(int) (index >>> 6)] |= 1L << index;
+        }
+
+        @Override
+        public boolean hasSamples() {
+            return false;
+        }
+
+        @Override
+        public void setSamples(long index, SampleSet samples) {
+        }
+
+        /**
+         * Mean and standard error of this point's success minus other's over the simulations
+         * both ran, or null when they share none.
+         */
+        double[] pairedDifference(Hits other) {
+            int n = Math.min(count, other.count);
+            if (n == 0) return null;
+            long onlyThis = 0, onlyOther = 0;
+            for (int w = 0; w < (n + 63) >>> 6; w++) {
+                int left = n - 64 * w;
+                long mask = left >= 64 ? -1L : (1L << left) - 1;
+                onlyThis += Long.bitCount(bits[w] & ~other.bits[w] & mask);
+                onlyOther += Long.bitCount(other.bits[w] & ~bits[w] & mask);
+            }
+            double mean = (double) (onlyThis - onlyOther) / n;
+            double variance = (double) (onlyThis + onlyOther) / n - mean * mean;
+            return new double[]{mean, Math.sqrt(Math.max(0, variance) / n)};
+        }
+    }
+
+    public static void run(Config base, Path specFile) throws Exception {
+        JsonNode spec = Config.mapper().readTree(specFile.toFile());
+        List<Point> points = points(base, spec);
+        if (points.isEmpty()) throw new IllegalArgumentException("Sweep " + specFile + " has no grid or points");
+        List<String> fields = new ArrayList<>();
+        for (Point p : points) {
+            for (String f : p.overrides().keySet()) {
+                if (!fields.contains(f)) fields.add(f);
+            }
+        }
+        Path output = Path.of(spec.path("output").asText("sweep_results.csv"));
+
+        int workers = MonteCarloRunner.workerCount(base);
+        System.out.println("Sweeping " + points.size() + " points of " + String.format("%,d", base.numSimulations)
+                + " simulations on " + workers + " worker threads -> " + output);
+        try (ExecutorService pool = Executors.newFixedThreadPool(workers);
+             PrintWriter out = new PrintWriter(Files.newBufferedWriter(output))) {
+            out.println("point," + String.join(",", fields) + "," + String.join(",", STAT_COLUMNS));
+            // keep a bounded number of finished-but-unwritten points in memory
+            ArrayDeque<Future<Outcome>> pending = new ArrayDeque<>();
+            int written = 0;
+            Hits first = null;
+            for (Point p : points) {
+                pending.add(pool.submit(() -> runPoint(p.cfg())));
+                if (pending.size() >= 2 * workers) {
+                    Outcome o = pending.poll().get();
+                    if (first == null) first = o.hits();
+                    writeRow(out, points.get(written++), fields, o, first, points.size());
+                }
+            }
+            while (!pending.isEmpty()) {
+                Outcome o = pending.poll().get();
+                if (first == null) first = o.hits();
+                writeRow(out, points.get(written++), fields, o, first, points.size());
+            }
+        }
+    }
+
+    static Outcome runPoint(Config cfg) {
+        Hits hits = new Hits(cfg);
+        MonteCarloRunner.Worker worker = new MonteCarloRunner.Worker(cfg, SamplePool.create(cfg), hits);
+        worker.run(0, cfg.numSimulations);
+        return new Outcome(worker.stats, hits);
+    }
+
+    static List<Point> points(Config base, JsonNode spec) throws Exception {
+        List<Map<String, JsonNode>> overrides = new ArrayList<>();
+        JsonNode grid = spec.path("grid");
+        if (grid.isObject() && grid.size() > 0) {
+            overrides.add(new LinkedHashMap<>());
+            for (Iterator<Map.Entry<String, JsonNode>> axes = grid.fields(); axes.hasNext(); ) {
+                Map.Entry<String, JsonNode> axis = axes.next();
+                if (!axis.getValue().isArray() || axis.getValue().isEmpty()) {
+                    throw new IllegalArgumentException("Sweep axis " + axis.getKey() + " needs a non-empty list");
+                }
+                List<Map<String, JsonNode>> next = new ArrayList<>();
+                for (Map<String, JsonNode> prefix : overrides) {
+                    for (JsonNode value : axis.getValue()) {
+                        Map<String, JsonNode> o = new LinkedHashMap<>(prefix);
+                        put(o, axis.getKey(), value);
+                        next.add(o);
+                    }
+                }
+                overrides = next;
+            }
+        }
+        for (JsonNode point : spec.path("points")) {
+            Map<String, JsonNode> o = new LinkedHashMap<>();
+            point.fields().forEachRemaining(e -> put(o, e.getKey(), e.getValue()));
+            overrides.add(o);
+        }
+
+        List<Point> points = new ArrayList<>(overrides.size());
+        for (Map<String, JsonNode> o : overrides) {
+            Config cfg = base.copyWithSeed(base.seed);
+            JsonNode tree = Config.mapper().valueToTree(o);
+            Config.mapper().readerForUpdating(cfg).readValue(tree);
+            // the worker pool is the sweep's own; per-point scheduling options do not apply
+            cfg.virtualThreads = false;
+            cfg.saveResults = false;
+            cfg.checkpointDir = null;
+            cfg.pathStats = false;
+            cfg.numProcesses = 0;
+            MonteCarloRunner.checkEngine(cfg);
+            points.add(new Point(points.size(), o, cfg));
+        }
+        return points;
+    }
+
+    private static void put(Map<String, JsonNode> overrides, String name, JsonNode value) {
+        if (value.isObject()) {
+            value.fields().forEachRemaining(e -> overrides.put(e.getKey(), e.getValue()));
+        } else {
+            overrides.put(name, value);
+        }
+    }
+
+    private static void writeRow(PrintWriter out, Point p, List<String> fields, Outcome outcome, Hits first,
+                                 int total) {
+        MonteCarloStats stats = outcome.stats();
+        double[] diff = outcome.hits().pairedDifference(first);
+        StringBuilder row = new StringBuilder().append(p.index());
+        for (String f : fields) {
+            JsonNode v = p.overrides().get(f);
+            row.append(',').append(v == null ? "" : csv(v.isTextual() ? v.asText() : v.toString()));
+        }
+        double n = Math.max(1, stats.count());
+        row.append(',').append(stats.count())
+                .append(',').append(stats.hits() / n)
+                .append(',').append(stats.bankrupt() / n)
+                .append(',').append((long) stats.averageBalance())
+                .append(',').append(stats.balanceAtQuantile(0.05))
+                .append(',').append(stats.balanceAtQuantile(0.25))
+                .append(',').append(stats.medianBalance())
+                .append(',').append(stats.balanceAtQuantile(0.75))
+                .append(',').append(stats.balanceAtQuantile(0.95))
+                .append(',').append(stats.drawdownAtQuantile(0.5))
+                .append(',').append(stats.drawdownAtQuantile(0.95))
+                .append(',').append(stats.maxDrawdown())
+                .append(',').append(stats.reachedTarget() / n)
+                .append(',').append(stats.reachedTarget() == 0 ? "" : stats.timeToTargetHistogram().valueAtQuantile(0.5))
+                .append(',').append(stats.estimates().standardError(Estimates.SUCCESS))
+                .append(',').append(diff == null ? "" : diff[0])
+                .append(',').append(diff == null ? "" : diff[1]);
+        out.println(row);
+        out.flush();
+        System.out.printf("Point %d/%d %s: success %.2f%% (+/- %.2f%%), bankrupt %.2f%%, median $%,d", p.index() + 1,
+                total, p.overrides(), 100 * stats.hits() / n, 100 * stats.estimates().halfWidth(Estimates.SUCCESS),
+                100 * stats.bankrupt() / n, stats.medianBalance());
+        if (p.index() > 0 && diff != null) {
+            System.out.printf(", vs point 1: %+.2f%% (+/- %.2f%%)", 100 * diff[0], 100 * Estimates.Z95 * diff[1]);
+        }
+        System.out.println();
+    }
+
+    private static String csv(String s) {
+        return s.contains(",") || s.contains("\"") ? "\"" + s.replace("\"", "\"\"") + "\"" : s;
+    }
+}
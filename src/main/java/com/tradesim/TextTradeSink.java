@@ -0,0 +1,165 @@
+package com.tradesim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Writes trades as text rows, either the trade_log.csv layout or the console table (" | "
+ * separators, grouped amounts). Each row is built in one reused StringBuilder and copied into
+ * the buffered writer, so a run of millions of trades allocates nothing per row.
+ */
+public final class TextTradeSink implements TradeSink {
+    private static final int[] WIDTHS = {10, 8, 4, 16, 12, 12, 14, 11};
+    private static final String[] COLUMNS = {"trade_num", "outcome", "rrr", "actual_risk_pct", "risk_amount",
+            "amount", "start_balance", "end_balance"};
+
+    private final Writer out;
+    private final boolean table;
+    private final boolean ownsOut;
+    private final StringBuilder row = new StringBuilder(160);
+    private char[] chars = new char[160];
+
+    /** Writes one row per trade to out; closing flushes but does not close out. */
+    public TextTradeSink(Writer out, boolean table) {
+        this(out, table, false);
+    }
+
+    private TextTradeSink(Writer out, boolean table, boolean ownsOut) {
+        this.out = out;
+        this.table = table;
+        this.ownsOut = ownsOut;
+    }
+
+    /** A CSV file of its own, closed with the sink; nothing is written yet. */
+    static TextTradeSink csv(Path path) throws IOException {
+        return new TextTradeSink(Files.newBufferedWriter(path), false, true);
+    }
+
+    /** Writes the column header row. */
+    public void header() throws IOException {
+        if (table) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) row.append(" | ");
+                field(COLUMNS[i], WIDTHS[i]);
+            }
+        } else {
+            row.append(String.join(",", COLUMNS));
+        }
+        write();
+    }
+
+    /** Writes text as a line of its own, e.g. a summary around the rows. */
+    public void line(String text) throws IOException {
+        row.append(text);
+        write();
+    }
+
+    @Override
+    public void trade(int tradeNum, int sample, boolean win, double rrr, long riskAmount, long startBalance,
+                      long endBalance) {
+        String sep = table ? " | " : " , ";
+        int start = row.length();
+        row.append(tradeNum);
+        pad(start, WIDTHS[0]);
+        row.append(sep);
+        field(win ? "Win" : "Loss", WIDTHS[1]);
+        row.append(sep);
+        start = row.length();
+        appendFixed(rrr, 1);
+        pad(start, WIDTHS[2]);
+        row.append(sep);
+        start = row.length();
+        appendFixed(startBalance == 0 ? 0.0 : (riskAmount / (double) startBalance) * 100.0, 2);
+        pad(start, WIDTHS[3]);
+        row.append(sep);
+        amount(riskAmount, WIDTHS[4]);
+        row.append(sep);
+        amount(endBalance - startBalance, WIDTHS[5]);
+        row.append(sep);
+        amount(startBalance, WIDTHS[6]);
+        row.append(sep);
+        amount(endBalance, WIDTHS[7]);
+        try {
+            write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void amount(long v, int width) {
+        int start = row.length();
+        if (table) {
+            appendGrouped(v);
+        } else {
+            row.append(v);
+        }
+        pad(start, width);
+    }
+
+    private void field(String s, int width) {
+        int start = row.length();
+        row.append(s);
+        pad(start, width);
+    }
+
+    // left-justifies the field that begins at start, as %-<width> does
+    private void pad(int start, int width) {
+        while (row.length() - start < width) row.append(' ');
+    }
+
+    // %,d
+    private void appendGrouped(long v) {
+        if (v < 0) {
+            if (v == Long.MIN_VALUE) {
+                row.append(String.format(Locale.US, "%,d", v));
+                return;
+            }
+            row.append('-');
+            v = -v;
+        }
+        int start = row.length();
+        row.append(v);
+        for (int i = row.length() - 3; i > start; i -= 3) {
+            row.insert(i, ',');
+        }
+    }
+
+    // %.<decimals>f: values clear of a rounding tie round the same whichever way they are scaled,
+    // so Math.round does; values near a tie, negatives and huge values go through String.format
+    private void appendFixed(double v, int decimals) {
+        long scale = decimals == 1 ? 10 : 100;
+        double scaled = v * scale;
+        if (!(scaled >= 0 && scaled < 1e15) || Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6) {
+            row.append(String.format(Locale.US, "%." + decimals + "f", v));
+            return;
+        }
+        long r = Math.round(scaled);
+        row.append(r / scale).append('.');
+        long fraction = r % scale;
+        if (decimals == 2 && fraction < 10) row.append('0');
+        row.append(fraction);
+    }
+
+    private void write() throws IOException {
+        row.append(System.lineSeparator());
+        int n = row.length();
+        if (chars.length < n) chars = Arrays.copyOf(chars, 2 * n);
+        row.getChars(0, n, chars, 0);
+        out.write(chars, 0, n);
+        row.setLength(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsOut) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+}
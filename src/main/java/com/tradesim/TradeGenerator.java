@@ -2,20 +2,38 @@ package com.tradesim;
 
 import com.tradesim.model.Trade;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class TradeGenerator {
-    public static List<Trade> generateSampleTrades(Config cfg) {
-        Random rnd = new Random(cfg.seed);
+    public static List<Trade> generateSampleTrades(Config cfg, RandomGenerator rnd) {
+        SampleSet samples = new SampleSet(cfg.numSampleTrades);
+        generate(cfg, rnd, samples);
+        return samples.toTrades();
+    }
+
+    /**
+     * Fills {@code into} with a fresh sample set, without allocating. Draws from {@code rnd} in
+     * the same order as the former List-based generator, including Collections.shuffle's swaps.
+     */
+    public static void generate(Config cfg, RandomGenerator rnd, SampleSet into) {
+        generate(cfg, rnd, into, -1);
+    }
+
+    /**
+     * As {@link #generate(Config, RandomGenerator, SampleSet)}, but with win count number
+     * {@code stratum} of the equally likely ones (low + stratum) instead of a random one;
+     * a negative stratum draws it.
+     */
+    public static void generate(Config cfg, RandomGenerator rnd, SampleSet into, int stratum) {
         int numSamples = cfg.numSampleTrades;
         int low = (int) Math.floor(numSamples * cfg.winRateLow);
         int high = (int) Math.floor(numSamples * cfg.winRateHigh);
-        int targetWins = low >= high ? low : low + rnd.nextInt(Math.max(1, high - low));
+        int targetWins = low >= high ? low
+                : stratum >= 0 ? low + stratum
+                : low + rnd.nextInt(Math.max(1, high - low));
 
-        List<Trade> trades = new ArrayList<>(numSamples);
+        into.clear(numSamples);
         for (int i = 0; i < numSamples; i++) {
             boolean win = i < targetWins;
             double rrr;
@@ -25,12 +43,14 @@ public class TradeGenerator {
                 double mu = Math.log(meanRrr) - 0.5 * sigma * sigma;
                 rrr = Math.exp(mu + sigma * rnd.nextGaussian());
                 rrr = Math.max(cfg.minRr, Math.min(cfg.maxRr, rrr));
+                into.setWin(i);
             } else {
                 rrr = cfg.minRr == 0 ? 1.0 : 1.0 + rnd.nextDouble() * 0.25;
             }
-            trades.add(new Trade(Math.round(rrr * 100.0) / 100.0, win));
+            into.rrr[i] = Math.round(rrr * 100.0) / 100.0;
+        }
+        for (int i = numSamples; i > 1; i--) {
+            into.swap(i - 1, rnd.nextInt(i));
         }
-        Collections.shuffle(trades, rnd);
-        return trades;
     }
 }
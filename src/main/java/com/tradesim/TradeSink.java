@@ -0,0 +1,72 @@
+package com.tradesim;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Receives a simulation's trades as {@link Simulator#simulate} executes them, so a path can be
+ * written out or summarized without keeping a trade log in memory. Sinks report I/O failures
+ * as {@link java.io.UncheckedIOException} from {@link #trade}.
+ */
+@FunctionalInterface
+public interface TradeSink extends AutoCloseable {
+    TradeSink NULL = (tradeNum, sample, win, rrr, riskAmount, startBalance, endBalance) -> {
+    };
+
+    /** Trade tradeNum (1-based) used sample trade sample and moved the balance from startBalance to endBalance. */
+    void trade(int tradeNum, int sample, boolean win, double rrr, long riskAmount, long startBalance, long endBalance);
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /** Sends every trade to each of sinks in turn; closing closes them all. */
+    static TradeSink tee(TradeSink... sinks) {
+        return new TradeSink() {
+            @Override
+            public void trade(int tradeNum, int sample, boolean win, double rrr, long riskAmount, long startBalance,
+                              long endBalance) {
+                for (TradeSink s : sinks) {
+                    s.trade(tradeNum, sample, win, rrr, riskAmount, startBalance, endBalance);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                IOException failure = null;
+                for (TradeSink s : sinks) {
+                    try {
+                        s.close();
+                    } catch (IOException e) {
+                        if (failure == null) failure = e;
+                    }
+                }
+                if (failure != null) throw failure;
+            }
+        };
+    }
+
+    /** The file extension for a tradeLogFormat: "csv", "binary" or "none". */
+    static String extension(String format) {
+        return switch (format) {
+            case "csv" -> ".csv";
+            case "binary" -> ".bin";
+            case "none" -> "";
+            default -> throw new IllegalArgumentException("Unknown tradeLogFormat " + format + " (csv, binary or none)");
+        };
+    }
+
+    /** Opens a sink writing to base + {@link #extension(String)}; "none" discards everything. */
+    static TradeSink open(String format, String base) throws IOException {
+        Path path = Path.of(base + extension(format));
+        return switch (format) {
+            case "csv" -> {
+                TextTradeSink csv = TextTradeSink.csv(path);
+                csv.header();
+                yield csv;
+            }
+            case "binary" -> new BinaryTradeSink(path);
+            default -> NULL;
+        };
+    }
+}
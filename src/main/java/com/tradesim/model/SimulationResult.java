@@ -0,0 +1,16 @@
+package com.tradesim.model;
+
+/**
+ * Outcome of one simulation. targetTrade is the number of trades after which the balance first
+ * reached the target (0 if it never did); tradesExecuted is where the run stopped, for stopReason.
+ */
+public record SimulationResult(long finalBalance, double maxDrawdown, int tradesExecuted, int targetTrade,
+                               StopReason stopReason) {
+    public boolean hitTarget(long targetBalance) {
+        return finalBalance >= targetBalance;
+    }
+
+    public boolean bankrupt() {
+        return finalBalance == 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.tradesim.model;
+
+/** Why a simulation stopped before (or at) its last trade. Stored by code in results files. */
+public enum StopReason {
+    COMPLETED, BANKRUPT, TARGET, RUIN, DRAWDOWN;
+
+    private static final StopReason[] VALUES = values();
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    public static StopReason fromCode(int code) {
+        return VALUES[code];
+    }
+}
@@ -0,0 +1,161 @@
+package com.tradesim;
+
+import com.tradesim.model.StopReason;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.SplittableRandom;
+
+/**
+ * Advances a group of independent simulations in lockstep, one trade per step, with the
+ * per-trade arithmetic of {@link Simulator#simulate} done lane-wise in structure-of-arrays form.
+ * Trade picks use the same counter-based draw as the scalar kernel ({@link Rng#boundedDraw}),
+ * so results are bit-identical to it. All quantities involved are
+ * non-negative, which makes the truncating D2L conversion equal to the scalar Math.floor.
+ * A lane that stops (bankrupt or by a stopping rule) gets zero risk, which leaves its
+ * balance and drawdown unchanged for the rest of the group's steps.
+ *
+ * <p>Compiled only by the {@code vector} profile and needs {@code --add-modules jdk.incubator.vector}
+ * at run time; {@link MonteCarloRunner#checkEngine} checks both and loads it.
+ */
+final class VectorSimulator extends LaneSimulator {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // simulations advanced together; a multiple of the lane count
+    static final int GROUP = 8 * LONGS.length();
+
+    private final Config cfg;
+    private final SamplePool pool;
+    private final int numSamples;
+    private final long[] pickKey = new long[GROUP];
+    private final SampleSet[] samples = new SampleSet[GROUP];
+    // generated sets when there is no shared pool
+    private final SampleSet[] ownSamples = new SampleSet[GROUP];
+    private final double[] rrr;
+    private final boolean[] win;
+    private final double[] riskBase = new double[GROUP];
+    private final double[] riskSchedule;
+    private final double[] stepRrr = new double[GROUP];
+    private final boolean[] stepWin = new boolean[GROUP];
+    private final boolean[] alive = new boolean[GROUP];
+    private final long[] maxBalance = new long[GROUP];
+
+    VectorSimulator(Config cfg, SamplePool pool) {
+        super(GROUP);
+        if (LONGS.length() != DOUBLES.length()) {
+            throw new IllegalStateException("Unexpected vector shapes: " + LONGS + " / " + DOUBLES);
+        }
+        this.cfg = cfg;
+        this.pool = pool;
+        this.numSamples = cfg.numSampleTrades;
+        this.rrr = new double[GROUP * numSamples];
+        this.win = new boolean[GROUP * numSamples];
+        this.riskSchedule = Risk.schedule(cfg);
+    }
+
+    @Override
+    SampleSet samples(int lane) {
+        return samples[lane];
+    }
+
+    @Override
+    void simulate(long firstIndex, int count) {
+        if (count > GROUP) throw new IllegalArgumentException("count " + count + " > " + GROUP);
+        for (int l = 0; l < GROUP; l++) {
+            if (l < count) {
+                load(l, firstIndex + l);
+            } else {
+                riskBase[l] = 0;
+                pickKey[l] = 0;
+                samples[l] = null;
+                balance[l] = 0;
+                alive[l] = false;
+            }
+            maxBalance[l] = balance[l];
+            maxDrawdown[l] = 0.0;
+            executed[l] = 0;
+            targetTrade[l] = 0;
+            stop[l] = StopReason.COMPLETED;
+        }
+
+        trade(count);
+    }
+
+    private void load(int l, long index) {
+        SplittableRandom rnd = Rng.forSimulation(cfg.seed, index);
+        if (ownSamples[l] == null) ownSamples[l] = new SampleSet(numSamples);
+        SampleSet set = SamplePool.sampleSet(cfg, pool, rnd, ownSamples[l]);
+        System.arraycopy(set.rrr, 0, rrr, l * numSamples, numSamples);
+        for (int j = 0; j < numSamples; j++) {
+            win[l * numSamples + j] = set.win(j);
+        }
+        riskBase[l] = cfg.kellyCap == 0 ? cfg.maxRiskPrct : set.kellyFraction() * cfg.kellyCap;
+        pickKey[l] = rnd.nextLong();
+        samples[l] = set;
+        balance[l] = cfg.startingBalance;
+        alive[l] = true;
+    }
+
+    /**
+     * The lockstep trade loop. It is deliberately one method holding only vector work: too large
+     * for C2 to inline into {@link #simulate}, whose sample generation would otherwise use up the
+     * inlining budget and leave vector operations on their (allocating) Java fallbacks.
+     */
+    private void trade(int count) {
+        // floor(profit * 0.0) is 0, so untaxed runs share the taxed code path
+        double taxRate = cfg.calcTax ? cfg.taxPct / 100.0 : 0.0;
+        for (int t = 0; t < cfg.numTrades; t++) {
+            double factor = riskSchedule[t];
+
+            // stopped and unused lanes pick too, but risk floor(balance * 0) = 0 and stay put
+            for (int l = 0; l < GROUP; l++) {
+                int p = l * numSamples + Rng.boundedDraw(pickKey[l], t, numSamples);
+                stepRrr[l] = rrr[p];
+                stepWin[l] = win[p];
+            }
+
+            for (int l = 0; l < GROUP; l += LONGS.length()) {
+                LongVector bal = LongVector.fromArray(LONGS, balance, l);
+                DoubleVector pct = DoubleVector.fromArray(DOUBLES, riskBase, l).mul(factor);
+                LongVector risk = (LongVector) toDouble(bal).mul(pct).convert(VectorOperators.D2L, 0);
+                LongVector profit = (LongVector) toDouble(risk).mul(DoubleVector.fromArray(DOUBLES, stepRrr, l))
+                        .convert(VectorOperators.D2L, 0);
+                LongVector tax = (LongVector) toDouble(profit).mul(taxRate).convert(VectorOperators.D2L, 0);
+                VectorMask<Long> winMask = VectorMask.fromArray(LONGS, stepWin, l);
+                bal = bal.add(profit.sub(tax), winMask).sub(risk, winMask.not()).max(0L);
+
+                LongVector maxBal = LongVector.fromArray(LONGS, maxBalance, l).max(bal);
+                // maxBal == 0 implies bal == 0, so dividing by 1 gives the scalar kernel's 0
+                DoubleVector drawdown = toDouble(maxBal.sub(bal)).div(toDouble(maxBal.max(1L))).mul(100.0);
+                DoubleVector maxDd = DoubleVector.fromArray(DOUBLES, maxDrawdown, l).max(drawdown);
+
+                bal.intoArray(balance, l);
+                maxBal.intoArray(maxBalance, l);
+                maxDd.intoArray(maxDrawdown, l);
+            }
+
+            boolean any = false;
+            for (int l = 0; l < count; l++) {
+                if (!alive[l]) continue;
+                executed[l]++;
+                if (targetTrade[l] == 0 && balance[l] >= cfg.targetBalance) targetTrade[l] = executed[l];
+                StopReason s = Simulator.stopReason(cfg, balance[l], maxDrawdown[l]);
+                if (s == StopReason.COMPLETED) {
+                    any = true;
+                } else {
+                    alive[l] = false;
+                    stop[l] = s;
+                    riskBase[l] = 0;
+                }
+            }
+            if (!any) break;
+        }
+    }
+
+    private static DoubleVector toDouble(LongVector v) {
+        return (DoubleVector) v.convert(VectorOperators.L2D, 0);
+    }
+}